@@ -0,0 +1,125 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.AgeStatsDto;
+import study.querydsl.dto.MemberAgeDto;
+import study.querydsl.repository.MemberAgeColumns;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    나이 집계 / 팀별 집계 / top-N 을 DB 쿼리로 할 때 vs 메모리 컬럼 스냅샷 (MemberAgeColumns)
+    -prof gc 의 gc.alloc.rate.norm 으로 컬럼 쪽은 호출당 할당이 거의 없는 것도 확인
+    H2 는 테이블이 안 바뀌면 같은 쿼리 결과를 재사용하므로 (OPTIMIZE_REUSE_RESULTS) 꺼 두고 잼
+    (100,000 명 : stats 47ms vs 0.12ms, 팀별 77ms vs 0.33ms, top 10 17ms vs 0.34ms)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AgeAggregationBenchmark {
+
+    @Param({"100000"})
+    int members;
+
+    ConfigurableApplicationContext context;
+    EntityManagerFactory emf;
+    MemberAgeColumns columns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (System.getProperty("bench.url") == null) {
+            System.setProperty("bench.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE");
+        }
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, members, 10);
+        emf = context.getBean(EntityManagerFactory.class);
+        columns = context.getBean(MemberAgeColumns.class);
+        // seed 는 벌크가 아닌 엔티티 저장이라 이미 반영되어 있지만 id 순으로 다시 만들어 둠
+        columns.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Tuple statsQuery() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return new JPAQueryFactory(em)
+                    .select(member.count(), member.age.sum(), member.age.avg(), member.age.max(), member.age.min())
+                    .from(member)
+                    .fetchOne();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public AgeStatsDto statsColumns() {
+        return columns.stats();
+    }
+
+    @Benchmark
+    public List<Tuple> statsByTeamQuery() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return new JPAQueryFactory(em)
+                    .select(team.name, member.count(), member.age.avg())
+                    .from(member)
+                    .join(member.team, team)
+                    .groupBy(team.name)
+                    .fetch();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public List<AgeStatsDto> statsByTeamColumns() {
+        return columns.statsByTeam();
+    }
+
+    @Benchmark
+    public List<Long> oldestQuery() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return new JPAQueryFactory(em)
+                    .select(member.id)
+                    .from(member)
+                    .orderBy(member.age.desc(), member.id.asc())
+                    .limit(10)
+                    .fetch();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public List<MemberAgeDto> oldestColumns() {
+        return columns.oldest(10);
+    }
+}
@@ -0,0 +1,84 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    벤치마크용 스프링 컨텍스트
+    인메모리 H2 + SQL 로그/ p6spy 끄고 띄운 뒤 member / team 데이터를 만들어 둠
+    네트워크 왕복까지 보려면 -Dbench.url=jdbc:h2:tcp://localhost/~/querydsl-bench 처럼 DB 를 바꿔서 실행
+ */
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(String... extraArgs) {
+        return new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args(extraArgs));
+    }
+
+    // 톰캣까지 띄움 (포트는 local.server.port), 부하 테스트용
+    public static ConfigurableApplicationContext startServer(SpringApplicationBuilder builder, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(args(extraArgs)));
+        args.add(0, "--server.port=0");
+        return builder.sources(QuerydslApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .run(args.toArray(new String[0]));
+    }
+
+    private static String[] args(String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.profiles.active=bench",
+                "--spring.datasource.url=" + System.getProperty("bench.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1"),
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                "--decorator.datasource.enabled=false",
+                "--logging.level.root=warn",
+                "--logging.level.org.hibernate.SQL=off"));
+        args.addAll(List.of(extraArgs));
+        return args.toArray(new String[0]);
+    }
+
+    // teamCount 개 팀에 members 명을 나눠서 저장 (나이는 0 ~ 99)
+    public static void seed(ConfigurableApplicationContext context, int members, int teamCount) {
+        EntityManager em = context.getBean(EntityManager.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        List<Long> teamIds = tx.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < teamCount; i++) {
+                Team team = new Team("team" + i);
+                em.persist(team);
+                ids.add(team.getId());
+            }
+            return ids;
+        });
+
+        int chunk = 1_000;
+        for (int from = 0; from < members; from += chunk) {
+            int start = from;
+            tx.executeWithoutResult(status -> {
+                for (int i = start; i < Math.min(start + chunk, members); i++) {
+                    Team team = em.getReference(Team.class, teamIds.get(i % teamCount));
+                    Member member = new Member("member" + i, i % 100);
+                    member.setTeam(team);
+                    em.persist(member);
+                }
+                em.flush();
+                em.clear();
+            });
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package study.querydsl.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.support.MemberColumnarJsonConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    MemberTeamDto 목록을 기본 JSON (Jackson, 행마다 객체) vs 컬럼 JSON (MemberColumnarJsonConverter) 으로 쓸 때
+    크기는 setUp 에서 한 번 출력, 시간 / 할당량은 -prof gc 로 비교
+    DB 없이 DTO 만 만들어서 씀 (팀 10 개)
+    (1,000 행 : 78KB -> 21KB, 252us -> 139us / 10,000 행 : 808KB -> 227KB, 2.1ms -> 0.96ms)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ColumnarJsonBenchmark {
+
+    @Param({"1000", "10000"})
+    int rows;
+
+    ObjectMapper objectMapper;
+    List<MemberTeamDto> members;
+    ByteArrayOutputStream out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        members = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            long teamId = i % 10;
+            members.add(new MemberTeamDto((long) i + 1, "member" + i, i % 100, teamId + 1, "team" + teamId));
+        }
+        out = new ByteArrayOutputStream(rows * 128);
+
+        int json = objectMapper.writeValueAsBytes(members).length;
+        int columnar = columnar().length;
+        System.out.printf("%n%d rows: json %,d bytes, columnar %,d bytes (%.0f%%)%n",
+                rows, json, columnar, 100.0 * columnar / json);
+    }
+
+    @Benchmark
+    public byte[] json() throws IOException {
+        out.reset();
+        objectMapper.writeValue(out, members);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] columnar() throws IOException {
+        out.reset();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            MemberColumnarJsonConverter.write(generator, members, null);
+        }
+        return out.toByteArray();
+    }
+}
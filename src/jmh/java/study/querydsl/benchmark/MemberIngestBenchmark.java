@@ -0,0 +1,94 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.BulkInsertResult;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/*
+    회원 대량 저장
+      - saveOneByOne : InitMember 처럼 한 트랜잭션에서 save 를 반복 (flush / clear 없음)
+      - saveAll      : MemberJpaRepository.saveAll (flush / clear 주기적으로)
+    batchSize = 0 이면 JDBC 배치 끔
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class MemberIngestBenchmark {
+
+    @Param({"20000"})
+    int rows;
+
+    @Param({"0", "100"})
+    int batchSize;
+
+    ConfigurableApplicationContext context;
+    EntityManager em;
+    TransactionTemplate tx;
+    MemberJpaRepository memberJpaRepository;
+    Long teamId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize);
+        em = context.getBean(EntityManager.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        teamId = tx.execute(status -> {
+            Team team = new Team("teamA");
+            em.persist(team);
+            return team.getId();
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        tx.executeWithoutResult(status -> em.createQuery("delete from Member").executeUpdate());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void saveOneByOne() {
+        tx.executeWithoutResult(status -> {
+            Team team = em.find(Team.class, teamId);
+            for (int i = 0; i < rows; i++) {
+                memberJpaRepository.save(new Member("member" + i, i % 100, team));
+            }
+        });
+    }
+
+    @Benchmark
+    public BulkInsertResult saveAll() {
+        Team team = em.getReference(Team.class, teamId);
+        return memberJpaRepository.saveAll(IntStream.range(0, rows).mapToObj(i -> {
+            Member member = new Member("member" + i, i % 100);
+            member.setTeam(team);
+            return member;
+        }));
+    }
+}
@@ -0,0 +1,202 @@
+package study.querydsl.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+    /v1/members 를 동기(톰캣 스레드) / 비동기(AsyncQueryExecutor platform, virtual) 로 처리할 때 처리량과 지연시간 비교
+    JMH 가 아니라 실제 톰캣 + HTTP 클라이언트로 부하를 줌 (모드마다 컨텍스트를 새로 띄움)
+
+    느린 DB 를 흉내 내려고 SQL 을 실행할 때마다 load.query-latency-ms 만큼 쉼 (커넥션을 쥔 채로)
+    톰캣 스레드(16)를 커넥션 풀(32)보다 적게 잡아서 동기 처리에서는 요청 스레드가 먼저 모자라게 함
+    virtual 은 Java 21 이상에서만 실행
+
+    ./gradlew loadTest -Pload.clients=128 -Pload.seconds=15
+ */
+public final class MemberLoadTest {
+
+    private static final int TOMCAT_THREADS = 16;
+    private static final int POOL_SIZE = 32;
+    private static final String QUERY = "?username=member1";
+
+    private static volatile boolean slowQueries;
+
+    private MemberLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.getInteger("load.clients", 128);
+        int seconds = Integer.getInteger("load.seconds", 15);
+        long latencyMs = Long.getLong("load.query-latency-ms", 50);
+
+        List<Result> results = new ArrayList<>();
+        results.add(run("sync", "/v1/members", "platform", clients, seconds, latencyMs));
+        results.add(run("async-platform", "/async/v1/members", "platform", clients, seconds, latencyMs));
+        if (Runtime.version().feature() >= 21) {
+            results.add(run("async-virtual", "/async/v1/members", "virtual", clients, seconds, latencyMs));
+        }
+
+        System.out.printf("%nclients=%d, seconds=%d, query latency=%dms, tomcat threads=%d, pool=%d, java=%d%n",
+                clients, seconds, latencyMs, TOMCAT_THREADS, POOL_SIZE, Runtime.version().feature());
+        System.out.printf("%-16s %10s %10s %10s %10s %8s%n", "mode", "req/s", "p50(ms)", "p99(ms)", "max(ms)", "errors");
+        for (Result result : results) {
+            System.out.printf("%-16s %10.1f %10.1f %10.1f %10.1f %8d%n", result.mode, result.throughput,
+                    result.percentile(0.50), result.percentile(0.99), result.percentile(1.0), result.errors);
+        }
+    }
+
+    private static Result run(String name, String path, String executorMode,
+                              int clients, int seconds, long latencyMs) throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder()
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(slowDataSource(latencyMs)));
+        ConfigurableApplicationContext context = BenchmarkApplication.startServer(builder,
+                "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                "--server.tomcat.threads.min-spare=" + TOMCAT_THREADS,
+                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "--async-query.mode=" + executorMode,
+                "--async-query.max-concurrency=" + POOL_SIZE,
+                "--async-query.queue-size=" + clients * 2);
+        try {
+            BenchmarkApplication.seed(context, 10_000, 10);
+            slowQueries = true;
+
+            URI uri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port") + path + QUERY);
+            ExecutorService clientThreads = Executors.newFixedThreadPool(clients);
+            ExecutorService httpThreads = Executors.newCachedThreadPool();
+            try {
+                HttpClient http = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .executor(httpThreads)
+                        .build();
+                // 워밍업 (JIT, 커넥션 풀, HTTP keep-alive 연결)
+                drive(http, uri, clientThreads, clients, Math.max(3, seconds / 3));
+                Result result = drive(http, uri, clientThreads, clients, seconds);
+                result.mode = name;
+                return result;
+            } finally {
+                clientThreads.shutdownNow();
+                httpThreads.shutdownNow();
+            }
+        } finally {
+            slowQueries = false;
+            context.close();
+        }
+    }
+
+    // clients 개 스레드가 seconds 동안 응답을 받자마자 다음 요청을 보냄
+    private static Result drive(HttpClient http, URI uri, ExecutorService clientThreads,
+                                int clients, int seconds) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            futures.add(clientThreads.submit(() -> {
+                Result result = new Result();
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            result.errors++;
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        result.errors++;
+                        continue;
+                    }
+                    result.add(System.nanoTime() - start);
+                }
+                return result;
+            }));
+        }
+
+        Result total = new Result();
+        for (Future<Result> future : futures) {
+            total.merge(future.get());
+        }
+        Arrays.sort(total.latencies, 0, total.size);
+        total.throughput = total.size / (double) seconds;
+        return total;
+    }
+
+    // DataSource 를 감싸서 slowQueries 일 때 Statement.execute* 마다 latencyMs 만큼 쉼
+    private static BeanPostProcessor slowDataSource(long latencyMs) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource ? slow(bean, DataSource.class, latencyMs) : bean;
+            }
+        };
+    }
+
+    private static Object slow(Object target, Class<?> type, long latencyMs) {
+        return Proxy.newProxyInstance(MemberLoadTest.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (slowQueries && method.getName().startsWith("execute")) {
+                Thread.sleep(latencyMs);
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            Class<?> returnType = method.getReturnType();
+            if (result != null && (returnType == Connection.class || Statement.class.isAssignableFrom(returnType))) {
+                return slow(result, returnType, latencyMs);
+            }
+            return result;
+        });
+    }
+
+    private static final class Result {
+
+        String mode;
+        long[] latencies = new long[1024];
+        int size;
+        long errors;
+        double throughput;
+
+        void add(long nanos) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = nanos;
+        }
+
+        void merge(Result other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.latencies[i]);
+            }
+            errors += other.errors;
+        }
+
+        // 정렬된 뒤에 호출
+        double percentile(double p) {
+            if (size == 0) {
+                return 0;
+            }
+            int index = Math.min(size - 1, (int) Math.ceil(p * size) - 1);
+            return latencies[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
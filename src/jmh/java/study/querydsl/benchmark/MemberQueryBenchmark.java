@@ -0,0 +1,249 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    MemberJpaRepository / MemberRepository 의 쿼리 작성 방식별 비용 비교
+    단계별로 따로 측정함
+      - build*      : 조건 -> Predicate 만들기
+      - serialize*  : Querydsl 메타데이터 -> JPQL 문자열
+      - sqlExecute  : 같은 SQL 을 JDBC 로 직접 실행 (DB + 드라이버 비용)
+      - project*    : 가져온 행 -> MemberTeamDto 변환
+      - endToEnd*   : 리포지토리 메서드 전체
+    ./gradlew jmh 로 실행 (gc 프로파일러로 할당량도 같이 나옴)
+ */
+@State(Scope.Benchmark)
+public class MemberQueryBenchmark {
+
+    private static final String SQL = "select m.member_id, m.username, m.age, t.id, t.name"
+            + " from member m left outer join team t on m.team_id = t.id"
+            + " where t.name = ? and m.age >= ? and m.age <= ?";
+
+    @Param({"10000"})
+    int members;
+
+    ConfigurableApplicationContext context;
+    MemberJpaRepository memberJpaRepository;
+    MemberRepository memberRepository;
+    EntityManager em;
+    DataSource dataSource;
+    JPAQueryFactory queryFactory;
+
+    MemberSearchCondition condition;
+    Predicate executorPredicate;
+    JPAQuery<MemberTeamDto> builtQuery;
+    List<Object[]> rawRows;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, members, 10);
+
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        memberRepository = context.getBean(MemberRepository.class);
+        dataSource = context.getBean(DataSource.class);
+        // 리포지토리와 같은 조건이 되도록 스프링의 공유 EntityManager 사용
+        em = context.getBean(EntityManager.class);
+        queryFactory = new JPAQueryFactory(em);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+
+        executorPredicate = member.team.name.eq("team3").and(member.age.between(20, 40));
+        builtQuery = query(whereParams(condition));
+        rawRows = executeSql();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Predicate buildBooleanBuilder() {
+        return booleanBuilder(condition);
+    }
+
+    @Benchmark
+    public Predicate[] buildWhereParams() {
+        return whereParams(condition);
+    }
+
+    @Benchmark
+    public String serializeJpql() {
+        JPQLSerializer serializer = new JPQLSerializer(JPQLTemplates.DEFAULT, em);
+        serializer.serialize(builtQuery.getMetadata(), false, null);
+        return serializer.toString();
+    }
+
+    @Benchmark
+    public String serializePlainJpql() {
+        return plainJpql(condition);
+    }
+
+    @Benchmark
+    public List<Object[]> sqlExecute() throws SQLException {
+        return executeSql();
+    }
+
+    @Benchmark
+    public void projectQueryProjection(Blackhole bh) {
+        QMemberTeamDto projection = new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+        for (Object[] row : rawRows) {
+            bh.consume(projection.newInstance(row));
+        }
+    }
+
+    @Benchmark
+    public void projectConstructor(Blackhole bh) {
+        for (Object[] row : rawRows) {
+            bh.consume(new MemberTeamDto((Long) row[0], (String) row[1], (Integer) row[2], (Long) row[3], (String) row[4]));
+        }
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> endToEndBooleanBuilder() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> endToEndWhereParams() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public Iterable<Member> endToEndPredicateExecutor() {
+        return memberRepository.findAll(executorPredicate);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> endToEndPlainJpql() {
+        TypedQuery<MemberTeamDto> query = em.createQuery(plainJpql(condition), MemberTeamDto.class);
+        if (hasText(condition.getUsername())) {
+            query.setParameter("username", condition.getUsername());
+        }
+        if (hasText(condition.getTeamName())) {
+            query.setParameter("teamName", condition.getTeamName());
+        }
+        if (condition.getAgeGoe() != null) {
+            query.setParameter("ageGoe", condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            query.setParameter("ageLoe", condition.getAgeLoe());
+        }
+        return query.getResultList();
+    }
+
+    // MemberJpaRepository.searchByBuilder 와 같은 조건 조립
+    private static Predicate booleanBuilder(MemberSearchCondition condition) {
+        BooleanBuilder builder = new BooleanBuilder();
+        if (hasText(condition.getUsername())) {
+            builder.and(member.username.eq(condition.getUsername()));
+        }
+        if (hasText(condition.getTeamName())) {
+            builder.and(team.name.eq(condition.getTeamName()));
+        }
+        if (condition.getAgeGoe() != null) {
+            builder.and(member.age.goe(condition.getAgeGoe()));
+        }
+        if (condition.getAgeLoe() != null) {
+            builder.and(member.age.loe(condition.getAgeLoe()));
+        }
+        return builder;
+    }
+
+    // MemberJpaRepository.search 와 같은 where 파라미터 조립
+    private static Predicate[] whereParams(MemberSearchCondition condition) {
+        return new Predicate[]{
+                hasText(condition.getUsername()) ? member.username.eq(condition.getUsername()) : null,
+                hasText(condition.getTeamName()) ? team.name.eq(condition.getTeamName()) : null,
+                condition.getAgeGoe() != null ? member.age.goe(condition.getAgeGoe()) : null,
+                condition.getAgeLoe() != null ? member.age.loe(condition.getAgeLoe()) : null
+        };
+    }
+
+    private static String plainJpql(MemberSearchCondition condition) {
+        StringBuilder jpql = new StringBuilder(
+                "select new study.querydsl.dto.MemberTeamDto(m.id, m.username, m.age, t.id, t.name)"
+                        + " from Member m left join m.team t where 1 = 1");
+        if (hasText(condition.getUsername())) {
+            jpql.append(" and m.username = :username");
+        }
+        if (hasText(condition.getTeamName())) {
+            jpql.append(" and t.name = :teamName");
+        }
+        if (condition.getAgeGoe() != null) {
+            jpql.append(" and m.age >= :ageGoe");
+        }
+        if (condition.getAgeLoe() != null) {
+            jpql.append(" and m.age <= :ageLoe");
+        }
+        return jpql.toString();
+    }
+
+    private JPAQuery<MemberTeamDto> query(Predicate[] where) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(where);
+    }
+
+    private List<Object[]> executeSql() throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SQL)) {
+            statement.setString(1, condition.getTeamName());
+            statement.setInt(2, condition.getAgeGoe());
+            statement.setInt(3, condition.getAgeLoe());
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Object[]{rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getLong(4), rs.getString(5)});
+                }
+            }
+        }
+        return rows;
+    }
+}
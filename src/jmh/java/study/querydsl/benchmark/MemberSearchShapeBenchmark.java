@@ -0,0 +1,121 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.MemberSearchQueryTemplates;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    search() 를 매번 Querydsl 로 조립하는 방식 vs 조건 모양별 JPQL 템플릿 방식
+      - prepare* : 실행 직전까지 (조건 -> JPQL 문자열) CPU / 할당만 비교
+      - search*  : 실행까지 포함
+ */
+@State(Scope.Benchmark)
+public class MemberSearchShapeBenchmark {
+
+    @Param({"10000"})
+    int members;
+
+    ConfigurableApplicationContext context;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    MemberSearchQueryTemplates queryTemplates;
+    MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, members, 10);
+
+        em = context.getBean(EntityManager.class);
+        queryFactory = new JPAQueryFactory(em);
+        queryTemplates = context.getBean(MemberSearchQueryTemplates.class);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String prepareDynamic() {
+        JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+        serializer.serialize(dynamicQuery().getMetadata(), false, null);
+        return serializer.toString();
+    }
+
+    @Benchmark
+    public String prepareTemplate() {
+        return queryTemplates.contentJpql(MemberSearchQueryTemplates.shapeOf(condition));
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchDynamic() {
+        return dynamicQuery().fetch();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchTemplate() {
+        return queryTemplates.search(em, condition);
+    }
+
+    // 템플릿 도입 전 MemberRepositoryImpl.search 와 같은 코드
+    private JPAQuery<MemberTeamDto> dynamicQuery() {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                );
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null;
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+}
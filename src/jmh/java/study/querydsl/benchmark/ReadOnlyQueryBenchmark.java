@@ -0,0 +1,140 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.entity.Member;
+import study.querydsl.support.ReadOnlyJPAQueryFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/*
+    쓰기 트랜잭션 안에서 회원 엔티티 목록을 읽고 flush 할 때 JPAQueryFactory vs ReadOnlyJPAQueryFactory
+      - loadAndFlush : 조회 + flush (-prof gc 의 gc.alloc.rate.norm 으로 스냅샷 만큼 줄어든 할당량 확인)
+      - flushOnly    : 미리 읽어 둔 상태에서 flush 만 (dirty checking 비용)
+      - retainedHeap : 읽어 온 뒤 영속성 컨텍스트가 붙잡고 있는 힙 (retainedBytes, GC 후 사용량 차이)
+    하이버네이트는 읽기 전용이어도 스냅샷을 한 번 만들었다가 버리기 때문에 할당량(alloc.rate.norm)은 거의 같고
+    남아 있는 힙과 flush 시간이 줄어듦
+    readOnly = true 면 ReadOnlyJPAQueryFactory
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReadOnlyQueryBenchmark {
+
+    @Param({"10000"})
+    int members;
+
+    @Param({"false", "true"})
+    boolean readOnly;
+
+    ConfigurableApplicationContext context;
+    EntityManagerFactory emf;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, members, 10);
+        emf = context.getBean(EntityManagerFactory.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    JPAQueryFactory queryFactory(EntityManager em) {
+        return readOnly ? new ReadOnlyJPAQueryFactory(em) : new JPAQueryFactory(em);
+    }
+
+    @Benchmark
+    public int loadAndFlush() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            List<Member> result = queryFactory(em).selectFrom(member).fetch();
+            em.flush();
+            em.getTransaction().rollback();
+            return result.size();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public void flushOnly(LoadedSession session) {
+        session.em.flush();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int retainedHeap(RetainedHeap counter) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            long before = usedHeapAfterGc();
+            List<Member> result = queryFactory(em).selectFrom(member).fetch();
+            counter.retainedBytes = usedHeapAfterGc() - before;
+            em.getTransaction().rollback();
+            return result.size();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class RetainedHeap {
+        public long retainedBytes;
+    }
+
+    // flush 할 엔티티를 매 호출 전에 읽어 둠
+    @State(Scope.Thread)
+    public static class LoadedSession {
+
+        EntityManager em;
+        List<Member> loaded;
+
+        @Setup(Level.Invocation)
+        public void load(ReadOnlyQueryBenchmark benchmark) {
+            em = benchmark.emf.createEntityManager();
+            em.getTransaction().begin();
+            loaded = benchmark.queryFactory(em).selectFrom(member).fetch();
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() {
+            em.getTransaction().rollback();
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.controller;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.CacheRegionStatsDto;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+// 하이버네이트 2차 캐시 / 쿼리 캐시 적중률
+@RestController
+public class CacheStatsController {
+
+    private final Statistics statistics;
+
+    public CacheStatsController(EntityManagerFactory emf) {
+        this.statistics = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @GetMapping("/cache/stats")
+    public List<CacheRegionStatsDto> cacheStats() {
+        return List.of(
+                toDto(Team.class.getName(), statistics.getDomainDataRegionStatistics(Team.class.getName())),
+                toDto(TeamRepository.TEAM_BY_NAME_REGION, statistics.getQueryRegionStatistics(TeamRepository.TEAM_BY_NAME_REGION))
+        );
+    }
+
+    private CacheRegionStatsDto toDto(String region, CacheRegionStatistics stats) {
+        if (stats == null) {
+            return new CacheRegionStatsDto(region, 0, 0, 0, 0);
+        }
+        return new CacheRegionStatsDto(region, stats.getHitCount(), stats.getMissCount(), stats.getPutCount(),
+                stats.getElementCountInMemory());
+    }
+}
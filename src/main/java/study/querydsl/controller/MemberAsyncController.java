@@ -0,0 +1,57 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.support.AsyncQueryExecutor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static study.querydsl.support.MemberColumnarJsonConverter.COLUMNAR_JSON_VALUE;
+
+/*
+    MemberController 의 v1 ~ v3 과 같은 조회를 비동기로 처리
+    조회는 AsyncQueryExecutor 에서 돌고 톰캣 스레드는 바로 반납됨 (느린 JDBC 호출에 요청 스레드가 묶이지 않음)
+ */
+@RestController
+@RequiredArgsConstructor
+public class MemberAsyncController {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberRepository memberRepository;
+    private final AsyncQueryExecutor asyncQueryExecutor;
+
+    @GetMapping(value = "/async/v1/members", produces = {MediaType.APPLICATION_JSON_VALUE, COLUMNAR_JSON_VALUE})
+    public CompletableFuture<List<MemberTeamDto>> searchMemberV1(MemberSearchCondition condition) {
+        return asyncQueryExecutor.submit(() -> memberJpaRepository.search(condition));
+    }
+
+    @GetMapping(value = "/async/v2/members", produces = {MediaType.APPLICATION_JSON_VALUE, COLUMNAR_JSON_VALUE})
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
+        return asyncQueryExecutor.submit(() -> memberRepository.searchPageSimple(condition, pageable));
+    }
+
+    @GetMapping(value = "/async/v3/members", produces = {MediaType.APPLICATION_JSON_VALUE, COLUMNAR_JSON_VALUE})
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
+        return asyncQueryExecutor.submit(() -> memberRepository.searchPageComplex(condition, pageable));
+    }
+
+    // 실행기 대기열이 꽉 참 -> 잠시 후 다시 시도
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String busy(RejectedExecutionException e) {
+        return e.getMessage();
+    }
+}
@@ -1,17 +1,44 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.dto.AgeStatsDto;
+import study.querydsl.dto.CountStrategy;
+import study.querydsl.dto.MemberAgeDto;
+import study.querydsl.dto.MemberPage;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSlice;
+import study.querydsl.dto.MemberSuggestionDto;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberAgeColumns;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberUsernameIndex;
+import study.querydsl.support.SqlCallerContext;
+import study.querydsl.support.TableVersions;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static study.querydsl.support.MemberColumnarJsonConverter.COLUMNAR_JSON_VALUE;
 
 @RestController
 @RequiredArgsConstructor
@@ -19,19 +46,167 @@ public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberUsernameIndex memberUsernameIndex;
+    private final MemberAgeColumns memberAgeColumns;
+    private final TableVersions tableVersions;
+    private final ObjectMapper objectMapper;
+
+    private static final int MAX_SLICE_SIZE = 1000;
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final int MAX_OLDEST = 1000;
+    private static final int STREAM_FLUSH_ROWS = 500;
+    private static final String NDJSON = "application/x-ndjson";
+    // 검색 결과가 의존하는 테이블 (ETag)
+    private static final String[] SEARCH_TABLES = {"member", "team"};
 
-    @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
+    /*
+        v1 ~ v3, v5 는 member / team 버전으로 ETag 를 붙임 (TableVersions)
+        If-None-Match 가 같으면 조회 없이 304
+        Accept 로 컬럼 JSON 도 고를 수 있음 (MemberColumnarJsonConverter, 기본은 json)
+     */
+    @GetMapping(value = "/v1/members", produces = {MediaType.APPLICATION_JSON_VALUE, COLUMNAR_JSON_VALUE})
+    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition, ServletWebRequest request) {
+        if (tableVersions.checkNotModified(request, SEARCH_TABLES)) {
+            return null;
+        }
         return memberJpaRepository.search(condition);
     }
 
-    @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
+    /*
+        v1 과 같은 결과를 한 줄에 하나씩 (NDJSON) 바로바로 내려줌
+        전체 리스트를 메모리에 만들지 않음, 클라이언트가 끊으면 쓰기에서 예외가 나서 조회도 중단됨
+     */
+    @GetMapping(value = "/v1/members/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> searchMemberV1Stream(MemberSearchCondition condition) {
+        // 본문은 MVC 비동기 스레드에서 쓰므로 SQL 태그용 엔드포인트를 지금 잡아서 넘겨줌
+        AtomicReference<OutputStream> target = new AtomicReference<>();
+        Callable<Void> write = SqlCallerContext.propagate(() -> {
+            writeStream(condition, target.get());
+            return null;
+        });
+        StreamingResponseBody body = out -> {
+            target.set(out);
+            try {
+                write.call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    private void writeStream(MemberSearchCondition condition, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            int[] rows = {0};
+            memberJpaRepository.searchStream(condition, dto -> {
+                try {
+                    generator.writeObject(dto);
+                    generator.writeRaw('\n');
+                    if (++rows[0] % STREAM_FLUSH_ROWS == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @GetMapping(value = "/v2/members", produces = {MediaType.APPLICATION_JSON_VALUE, COLUMNAR_JSON_VALUE})
+    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable, ServletWebRequest request) {
+        if (tableVersions.checkNotModified(request, SEARCH_TABLES)) {
+            return null;
+        }
         return memberRepository.searchPageSimple(condition,pageable);
     }
 
-    @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
+    @GetMapping(value = "/v3/members", produces = {MediaType.APPLICATION_JSON_VALUE, COLUMNAR_JSON_VALUE})
+    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable, ServletWebRequest request) {
+        if (tableVersions.checkNotModified(request, SEARCH_TABLES)) {
+            return null;
+        }
         return memberRepository.searchPageComplex(condition,pageable);
     }
+
+    // count=exact | capped:10000 | estimated - 응답의 countStrategy / totalExact 로 total 이 어떻게 나왔는지 알 수 있음
+    @GetMapping(value = "/v3/members", params = "count")
+    public MemberPage searchMemberV3Counted(MemberSearchCondition condition, Pageable pageable, @RequestParam String count,
+                                            ServletWebRequest request) {
+        CountStrategy countStrategy = CountStrategy.parse(count);
+        if (tableVersions.checkNotModified(request, SEARCH_TABLES)) {
+            return null;
+        }
+        return memberRepository.searchPage(condition, pageable, countStrategy);
+    }
+
+    // 커서 기반 페이징 - 응답의 nextCursor 를 cursor 파라미터로 넘기면 다음 페이지
+    @GetMapping("/v4/members")
+    public MemberSlice searchMemberV4(MemberSearchCondition condition,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "20") int size) {
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            throw new IllegalArgumentException("size 는 1 ~ " + MAX_SLICE_SIZE + " 사이여야 합니다.");
+        }
+        return memberRepository.searchSlice(condition, cursor, size);
+    }
+
+    // v3 과 같은 결과, count 쿼리를 content 조회와 동시에 실행
+    @GetMapping(value = "/v5/members", produces = {MediaType.APPLICATION_JSON_VALUE, COLUMNAR_JSON_VALUE})
+    public Page<MemberTeamDto> searchMemberV5(MemberSearchCondition condition, Pageable pageable, ServletWebRequest request) {
+        if (tableVersions.checkNotModified(request, SEARCH_TABLES)) {
+            return null;
+        }
+        return memberRepository.searchPageParallel(condition, pageable);
+    }
+
+    // username 이 prefix 로 시작하는 회원 (대소문자 무시, 나이 많은 순), DB 를 안 가고 메모리 인덱스에서 찾음
+    @GetMapping("/members/autocomplete")
+    public List<MemberSuggestionDto> autocomplete(@RequestParam String prefix,
+                                                  @RequestParam(defaultValue = "10") int limit) {
+        if (!StringUtils.hasText(prefix)) {
+            throw new IllegalArgumentException("prefix 는 비어 있으면 안 됩니다.");
+        }
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException("limit 는 1 ~ " + MAX_SUGGESTIONS + " 사이여야 합니다.");
+        }
+        return memberUsernameIndex.suggest(prefix, limit);
+    }
+
+    // 아래 나이 통계는 DB 를 안 가고 메모리 컬럼 스냅샷에서 계산 (MemberAgeColumns)
+    @GetMapping("/members/age-stats")
+    public AgeStatsDto ageStats() {
+        return memberAgeColumns.stats();
+    }
+
+    @GetMapping("/members/age-stats/teams")
+    public List<AgeStatsDto> ageStatsByTeam() {
+        return memberAgeColumns.statsByTeam();
+    }
+
+    @GetMapping("/members/age-count")
+    public long ageCount(@RequestParam(required = false) Integer ageGoe,
+                         @RequestParam(required = false) Integer ageLoe) {
+        return memberAgeColumns.countByAge(ageGoe, ageLoe);
+    }
+
+    // 나이 많은 순 limit 명 (나이가 같으면 id 순)
+    @GetMapping("/members/oldest")
+    public List<MemberAgeDto> oldest(@RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > MAX_OLDEST) {
+            throw new IllegalArgumentException("limit 는 1 ~ " + MAX_OLDEST + " 사이여야 합니다.");
+        }
+        return memberAgeColumns.oldest(limit);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String badRequest(IllegalArgumentException e) {
+        return e.getMessage();
+    }
 }
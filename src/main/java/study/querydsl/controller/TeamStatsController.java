@@ -0,0 +1,31 @@
+package study.querydsl.controller;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.repository.TeamStatsSummary;
+
+import java.util.List;
+
+// 팀별 회원 수 / 나이 통계 - group by 없이 요약 테이블(team_stats) 에서 팀 수 만큼만 읽음
+@RestController
+public class TeamStatsController {
+
+    private final TeamStatsSummary teamStatsSummary;
+
+    public TeamStatsController(TeamStatsSummary teamStatsSummary) {
+        this.teamStatsSummary = teamStatsSummary;
+    }
+
+    @GetMapping("/teams/stats")
+    public List<TeamStatsDto> teamStats() {
+        return teamStatsSummary.findAll();
+    }
+
+    // 전체를 다시 계산해서 요약과 다른 팀 id (team-stats.repair 면 고침)
+    @PostMapping("/teams/stats/verify")
+    public List<Long> verify() {
+        return teamStatsSummary.verify();
+    }
+}
@@ -0,0 +1,25 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class AgeStatsDto {
+
+    // 팀별 통계일 때 팀명 (전체 통계면 null)
+    private String teamName;
+    private long count;
+    private long sum;
+    // 회원이 없으면 null
+    private Double avg;
+    private Integer min;
+    private Integer max;
+
+    public AgeStatsDto(String teamName, long count, long sum, Integer min, Integer max) {
+        this.teamName = teamName;
+        this.count = count;
+        this.sum = sum;
+        this.avg = count == 0 ? null : (double) sum / count;
+        this.min = min;
+        this.max = max;
+    }
+}
@@ -0,0 +1,19 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkInsertResult {
+
+    private long rows;
+    private long elapsedMillis;
+
+    public BulkInsertResult(long rows, long elapsedMillis) {
+        this.rows = rows;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? rows * 1000.0 : rows * 1000.0 / elapsedMillis;
+    }
+}
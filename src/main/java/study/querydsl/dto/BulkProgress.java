@@ -0,0 +1,24 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkProgress {
+
+    private long rows;
+    private int chunks;
+    // 마지막으로 커밋된 청크의 끝 id (중간에 실패하면 여기까지는 반영되어 있음)
+    private Long lastId;
+    private long elapsedMillis;
+
+    public BulkProgress(long rows, int chunks, Long lastId, long elapsedMillis) {
+        this.rows = rows;
+        this.chunks = chunks;
+        this.lastId = lastId;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? rows * 1000.0 : rows * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,26 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class CacheRegionStatsDto {
+
+    private String region;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long elementCount;
+
+    public CacheRegionStatsDto(String region, long hitCount, long missCount, long putCount, long elementCount) {
+        this.region = region;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+        this.elementCount = elementCount;
+    }
+
+    public double getHitRatio() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
@@ -0,0 +1,72 @@
+package study.querydsl.dto;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Locale;
+
+/*
+    페이지 조회에서 전체 건수를 어떻게 구할지
+      - EXACT     : count(*) (기존 동작)
+      - CAPPED    : cap 건 까지만 셈, 넘으면 "cap+" 로 표시 (cap 은 MAX_CAP 까지)
+      - ESTIMATED : id 범위를 4 등분한 칸마다 가운데 고정 구간 하나씩 (ESTIMATE_WINDOWS) 쿼리 한 번으로 세고
+                    세어 본 구간 합에 대한 전체 id 범위 비율 만큼 늘려 추정
+    요청 파라미터 형식 : exact / capped:10000 / estimated
+ */
+@Getter
+@EqualsAndHashCode
+public class CountStrategy {
+
+    public enum Type { EXACT, CAPPED, ESTIMATED }
+
+    public static final long DEFAULT_CAP = 10_000;
+    public static final long MAX_CAP = 100_000;
+
+    private final Type type;
+    private final long cap;
+
+    private CountStrategy(Type type, long cap) {
+        this.type = type;
+        this.cap = cap;
+    }
+
+    public static CountStrategy exact() {
+        return new CountStrategy(Type.EXACT, 0);
+    }
+
+    public static CountStrategy capped(long cap) {
+        if (cap < 1 || cap > MAX_CAP) {
+            throw new IllegalArgumentException("cap 은 1 ~ " + MAX_CAP + " 사이여야 합니다: " + cap);
+        }
+        return new CountStrategy(Type.CAPPED, cap);
+    }
+
+    public static CountStrategy estimated() {
+        return new CountStrategy(Type.ESTIMATED, 0);
+    }
+
+    public static CountStrategy parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return exact();
+        }
+        String[] parts = value.split(":", 2);
+        try {
+            Type type = Type.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+            switch (type) {
+                case CAPPED:
+                    return capped(parts.length > 1 ? Long.parseLong(parts[1].trim()) : DEFAULT_CAP);
+                case ESTIMATED:
+                    return estimated();
+                default:
+                    return exact();
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("잘못된 count 전략 입니다: " + value, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.CAPPED ? "capped:" + cap : type.name().toLowerCase(Locale.ROOT);
+    }
+}
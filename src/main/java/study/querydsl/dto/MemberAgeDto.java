@@ -0,0 +1,17 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class MemberAgeDto {
+
+    private Long memberId;
+    private int age;
+    private Long teamId;
+
+    public MemberAgeDto(Long memberId, int age, Long teamId) {
+        this.memberId = memberId;
+        this.age = age;
+        this.teamId = teamId;
+    }
+}
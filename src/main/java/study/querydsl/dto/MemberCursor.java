@@ -0,0 +1,46 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/*
+    keyset(seek) 페이징 커서
+    마지막으로 내려준 행의 (age, memberId) 를 담아서 다음 페이지는 그 뒤부터 찾음
+    클라이언트 에게는 base64 문자열로만 보여줌
+ */
+@Getter
+public class MemberCursor {
+
+    private final int age;
+    private final long memberId;
+
+    public MemberCursor(int age, long memberId) {
+        this.age = age;
+        this.memberId = memberId;
+    }
+
+    public static MemberCursor of(MemberTeamDto last) {
+        return new MemberCursor(last.getAge(), last.getMemberId());
+    }
+
+    public String encode() {
+        String raw = age + ":" + memberId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 커서가 없으면 첫 페이지
+    public static MemberCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            return new MemberCursor(Integer.parseInt(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("잘못된 커서 입니다: " + cursor, e);
+        }
+    }
+}
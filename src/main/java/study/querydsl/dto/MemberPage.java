@@ -0,0 +1,29 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/*
+    count 전략(CountStrategy)을 고를 수 있는 페이지 조회 결과
+    totalExact 가 false 면 total 은 하한(capped) 이거나 추정값(estimated)
+ */
+@Data
+public class MemberPage {
+
+    private List<MemberTeamDto> content;
+    private int page;
+    private int size;
+    private long total;
+    private boolean totalExact;
+    private String countStrategy;
+
+    public MemberPage(List<MemberTeamDto> content, int page, int size, long total, boolean totalExact, CountStrategy countStrategy) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.total = total;
+        this.totalExact = totalExact;
+        this.countStrategy = countStrategy.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// 커서 기반 조회 결과 (nextCursor 를 다음 요청에 그대로 넘기면 됨)
+@Data
+public class MemberSlice {
+
+    private List<MemberTeamDto> content;
+    private String nextCursor;
+    private boolean hasNext;
+
+    public MemberSlice(List<MemberTeamDto> content, String nextCursor, boolean hasNext) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+    }
+}
@@ -0,0 +1,17 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class MemberSuggestionDto {
+
+    private Long memberId;
+    private String username;
+    private int age;
+
+    public MemberSuggestionDto(Long memberId, String username, int age) {
+        this.memberId = memberId;
+        this.username = username;
+        this.age = age;
+    }
+}
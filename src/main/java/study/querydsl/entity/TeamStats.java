@@ -0,0 +1,25 @@
+package study.querydsl.entity;
+
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+// 팀별 회원 수 / 나이 합계 / 최소 / 최대 요약 (TeamStatsSummary 가 SQL 로 직접 관리, 엔티티로는 읽기만 함)
+@Entity
+@Immutable
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class TeamStats {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+    private long memberCount;
+    private long ageSum;
+    private Integer minAge;
+    private Integer maxAge;
+}
@@ -0,0 +1,436 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.AgeStatsDto;
+import study.querydsl.dto.MemberAgeDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.EntityChangeListener;
+import study.querydsl.support.EntityChangeNotifier;
+import study.querydsl.support.SnapshotMaintainer;
+import study.querydsl.support.TableChangeNotifier;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    나이 집계 / 나이 구간 count / 나이 top-N 용 회원 컬럼 스냅샷 (DB 안 감)
+    회원 한 명당 객체 없이 배열 세 개 (long[] id, int[] age, int[] 팀 코드) 에 id 순으로 담음
+      - 팀은 팀 id -> 코드(0, 1, 2 ...) 사전으로 바꿔서 int 하나로 저장 (-1 = 팀 없음, -2 = 삭제된 행)
+      - 행당 16 바이트, 천만 명이면 배열 세 개로 160MB 정도 (GC 가 훑을 객체가 없음)
+      - 삭제는 자리만 비워 두고 (-2) 빈 자리가 1/4 을 넘으면 당겨서 채움
+
+    - 시작할 때 (ApplicationReadyEvent) id 순으로 스트리밍해서 만들고, 이후 엔티티 변경은 커밋된 뒤에 한 건씩 반영
+      새 회원은 보통 마지막 id 보다 크므로 뒤에 붙임 (아니면 자리를 만들어 끼워 넣음)
+    - 벌크 연산은 어떤 행이 바뀌었는지 모르므로 커밋 후 백그라운드에서 다시 만듦 (SnapshotMaintainer)
+    - 읽기는 read lock, 반영은 write lock (집계 한 번 = 배열 한 번 훑기)
+
+    statsByTeam 은 QuerydslBasicTest.group 처럼 team.name 으로 묶음 (inner join 이라 팀 없는 회원은 빠짐)
+ */
+@Component
+public class MemberAgeColumns implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MemberAgeColumns.class);
+
+    private static final int LOAD_FETCH_SIZE = 1000;
+    private static final int NO_TEAM = -1;
+    private static final int DELETED = -2;
+
+    private final EntityManager em;
+    private final TransactionTemplate loadTx;
+    private final boolean enabled;
+    private final SnapshotMaintainer<Columns> columns;
+    private final Lock readLock;
+
+    public MemberAgeColumns(EntityManager em, PlatformTransactionManager transactionManager,
+                            EntityChangeNotifier entityNotifier, TableChangeNotifier tableNotifier,
+                            MeterRegistry meterRegistry,
+                            @Value("${member.age-columns.enabled:true}") boolean enabled) {
+        this.em = em;
+        // 커밋 후 반영하는 변경과 맞아야 하므로 복제본이 아닌 원본에서 읽음 (읽기 전용이면 복제본으로 감)
+        this.loadTx = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.columns = new SnapshotMaintainer<>("member-age-columns", new Columns(16), this::load);
+        this.readLock = columns.readLock();
+        Gauge.builder("member.age-columns.size", this, MemberAgeColumns::size).register(meterRegistry);
+
+        if (enabled) {
+            columns.listen(entityNotifier, tableNotifier, new RowChangeListener(), "member", "team");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    // count, sum, avg, min, max (QuerydslBasicTest.aggregation)
+    public AgeStatsDto stats() {
+        readLock.lock();
+        try {
+            Columns c = columns.current();
+            long count = 0;
+            long sum = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < c.size; i++) {
+                if (c.teamCodes[i] != DELETED) {
+                    int age = c.ages[i];
+                    count++;
+                    sum += age;
+                    min = Math.min(min, age);
+                    max = Math.max(max, age);
+                }
+            }
+            return stats(null, count, sum, min, max);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // 팀명별 count, sum, avg, min, max (팀명 순)
+    public List<AgeStatsDto> statsByTeam() {
+        readLock.lock();
+        try {
+            Columns c = columns.current();
+            int teams = c.teamCount;
+            long[] counts = new long[teams];
+            long[] sums = new long[teams];
+            int[] mins = new int[teams];
+            int[] maxs = new int[teams];
+            Arrays.fill(mins, Integer.MAX_VALUE);
+            Arrays.fill(maxs, Integer.MIN_VALUE);
+            for (int i = 0; i < c.size; i++) {
+                int code = c.teamCodes[i];
+                if (code >= 0) {
+                    int age = c.ages[i];
+                    counts[code]++;
+                    sums[code] += age;
+                    mins[code] = Math.min(mins[code], age);
+                    maxs[code] = Math.max(maxs[code], age);
+                }
+            }
+
+            // 같은 이름의 팀은 합침 (group by team.name)
+            Map<String, long[]> byName = new TreeMap<>();
+            for (int code = 0; code < teams; code++) {
+                if (counts[code] == 0 || c.teamNames[code] == null) {
+                    continue;
+                }
+                long[] acc = byName.computeIfAbsent(c.teamNames[code],
+                        name -> new long[]{0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE});
+                acc[0] += counts[code];
+                acc[1] += sums[code];
+                acc[2] = Math.min(acc[2], mins[code]);
+                acc[3] = Math.max(acc[3], maxs[code]);
+            }
+            List<AgeStatsDto> result = new ArrayList<>(byName.size());
+            byName.forEach((name, acc) -> result.add(stats(name, acc[0], acc[1], (int) acc[2], (int) acc[3])));
+            return result;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // ageGoe <= age <= ageLoe 인 회원 수 (null 이면 그쪽 조건 없음)
+    public long countByAge(Integer ageGoe, Integer ageLoe) {
+        int from = ageGoe != null ? ageGoe : Integer.MIN_VALUE;
+        int to = ageLoe != null ? ageLoe : Integer.MAX_VALUE;
+        readLock.lock();
+        try {
+            Columns c = columns.current();
+            long count = 0;
+            for (int i = 0; i < c.size; i++) {
+                int age = c.ages[i];
+                if (age >= from && age <= to && c.teamCodes[i] != DELETED) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+        나이 많은 순 limit 명 (나이가 같으면 id 순)
+        행 번호만 담는 크기 limit 짜리 최소 힙으로 한 번 훑음 (정렬 안 함)
+     */
+    public List<MemberAgeDto> oldest(int limit) {
+        readLock.lock();
+        try {
+            Columns c = columns.current();
+            int[] heap = new int[limit];
+            int heapSize = 0;
+            for (int i = 0; i < c.size; i++) {
+                if (c.teamCodes[i] == DELETED) {
+                    continue;
+                }
+                if (heapSize < limit) {
+                    heap[heapSize] = i;
+                    siftUp(c, heap, heapSize++);
+                } else if (before(c, i, heap[0])) {
+                    heap[0] = i;
+                    siftDown(c, heap, heapSize);
+                }
+            }
+            MemberAgeDto[] result = new MemberAgeDto[heapSize];
+            for (int n = heapSize - 1; n >= 0; n--) {
+                int row = heap[0];
+                result[n] = new MemberAgeDto(c.ids[row], c.ages[row],
+                        c.teamCodes[row] >= 0 ? c.teamIds[c.teamCodes[row]] : null);
+                heap[0] = heap[n];
+                siftDown(c, heap, n);
+            }
+            return Arrays.asList(result);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int size() {
+        readLock.lock();
+        try {
+            Columns c = columns.current();
+            return c.size - c.deleted;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // 시작할 때 / 벌크 연산 후에 한 번에 하나씩만 돎
+    public void rebuild() {
+        columns.rebuild();
+    }
+
+    private Columns load() {
+        Columns fresh = new Columns(1024);
+        long start = System.nanoTime();
+        loadTx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            try (Stream<Tuple> rows = queryFactory
+                    .select(team.id, team.name)
+                    .from(team)
+                    .setHint(QueryHints.HINT_FETCH_SIZE, LOAD_FETCH_SIZE)
+                    .stream()) {
+                rows.forEach(row -> fresh.putTeam(row.get(team.id), row.get(team.name)));
+            }
+            try (Stream<Tuple> rows = queryFactory
+                    .select(member.id, member.age, member.team.id)
+                    .from(member)
+                    .orderBy(member.id.asc())
+                    .setHint(QueryHints.HINT_FETCH_SIZE, LOAD_FETCH_SIZE)
+                    .stream()) {
+                rows.forEach(row -> fresh.putMember(row.get(member.id), row.get(member.age), row.get(member.team.id)));
+            }
+        });
+        log.info("member age columns built: {} members, {} teams in {} ms",
+                fresh.size, fresh.teamCount, (System.nanoTime() - start) / 1_000_000);
+        return fresh;
+    }
+
+    private static AgeStatsDto stats(String teamName, long count, long sum, int min, int max) {
+        return count == 0
+                ? new AgeStatsDto(teamName, 0, 0, null, null)
+                : new AgeStatsDto(teamName, count, sum, min, max);
+    }
+
+    // 힙 맨 위가 "가장 덜 늙은" 행 (a 가 b 보다 결과에서 앞이면 true)
+    private static boolean before(Columns c, int a, int b) {
+        return c.ages[a] != c.ages[b] ? c.ages[a] > c.ages[b] : c.ids[a] < c.ids[b];
+    }
+
+    private static void siftUp(Columns c, int[] heap, int n) {
+        while (n > 0) {
+            int parent = (n - 1) / 2;
+            if (!before(c, heap[parent], heap[n])) {
+                break;
+            }
+            swap(heap, parent, n);
+            n = parent;
+        }
+    }
+
+    private static void siftDown(Columns c, int[] heap, int size) {
+        int n = 0;
+        while (true) {
+            int child = 2 * n + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(c, heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!before(c, heap[n], heap[child])) {
+                break;
+            }
+            swap(heap, n, child);
+            n = child;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    @Override
+    public void destroy() {
+        columns.shutdown();
+    }
+
+    private class RowChangeListener implements EntityChangeListener {
+
+        @Override
+        public void onInsert(PostInsertEvent event) {
+            changed(event.getEntity(), (Long) event.getId(), event.getState(), event.getPersister().getEntityMetamodel());
+        }
+
+        @Override
+        public void onUpdate(PostUpdateEvent event) {
+            changed(event.getEntity(), (Long) event.getId(), event.getState(), event.getPersister().getEntityMetamodel());
+        }
+
+        @Override
+        public void onDelete(PostDeleteEvent event) {
+            if (event.getEntity() instanceof Member) {
+                long id = (Long) event.getId();
+                columns.applyAfterCommit(c -> c.removeMember(id));
+            }
+            // 삭제된 팀은 사전에 남겨 둠 (소속 회원이 없으므로 집계에 안 나옴)
+        }
+
+        private void changed(Object entity, Long id, Object[] state, EntityMetamodel metamodel) {
+            if (entity instanceof Member) {
+                int age = (Integer) state[metamodel.getPropertyIndex("age")];
+                Long teamId = SnapshotMaintainer.teamId(state[metamodel.getPropertyIndex("team")]);
+                columns.applyAfterCommit(c -> c.putMember(id, age, teamId));
+            } else if (entity instanceof Team) {
+                String name = (String) state[metamodel.getPropertyIndex("name")];
+                columns.applyAfterCommit(c -> c.putTeam(id, name));
+            }
+        }
+    }
+
+    // id 순으로 정렬된 컬럼들 + 팀 사전 (write lock 안에서만 바꿈)
+    private static class Columns {
+        private long[] ids;
+        private int[] ages;
+        private int[] teamCodes;
+        private int size;
+        private int deleted;
+
+        private final Map<Long, Integer> teamCodeById = new HashMap<>();
+        private long[] teamIds = new long[16];
+        private String[] teamNames = new String[16];
+        private int teamCount;
+
+        private Columns(int capacity) {
+            ids = new long[capacity];
+            ages = new int[capacity];
+            teamCodes = new int[capacity];
+        }
+
+        private void putTeam(long id, String name) {
+            teamNames[teamCode(id)] = name;
+        }
+
+        private int teamCode(Long teamId) {
+            if (teamId == null) {
+                return NO_TEAM;
+            }
+            Integer code = teamCodeById.get(teamId);
+            if (code == null) {
+                if (teamCount == teamIds.length) {
+                    teamIds = Arrays.copyOf(teamIds, teamCount * 2);
+                    teamNames = Arrays.copyOf(teamNames, teamCount * 2);
+                }
+                code = teamCount++;
+                teamIds[code] = teamId;
+                teamCodeById.put(teamId, code);
+            }
+            return code;
+        }
+
+        private void putMember(long id, int age, Long teamId) {
+            int pos = size > 0 && ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                if (teamCodes[pos] == DELETED) {
+                    deleted--;
+                }
+            } else {
+                pos = -pos - 1;
+                if (size == ids.length) {
+                    int capacity = size + (size >> 1) + 1;
+                    ids = Arrays.copyOf(ids, capacity);
+                    ages = Arrays.copyOf(ages, capacity);
+                    teamCodes = Arrays.copyOf(teamCodes, capacity);
+                }
+                if (pos < size) {
+                    System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+                    System.arraycopy(ages, pos, ages, pos + 1, size - pos);
+                    System.arraycopy(teamCodes, pos, teamCodes, pos + 1, size - pos);
+                }
+                ids[pos] = id;
+                size++;
+            }
+            ages[pos] = age;
+            teamCodes[pos] = teamCode(teamId);
+        }
+
+        private void removeMember(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0 || teamCodes[pos] == DELETED) {
+                return;
+            }
+            teamCodes[pos] = DELETED;
+            if (++deleted > size / 4) {
+                compact();
+            }
+        }
+
+        private void compact() {
+            int to = 0;
+            for (int from = 0; from < size; from++) {
+                if (teamCodes[from] != DELETED) {
+                    ids[to] = ids[from];
+                    ages[to] = ages[from];
+                    teamCodes[to] = teamCodes[from];
+                    to++;
+                }
+            }
+            size = to;
+            deleted = 0;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.BulkProgress;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QMember.member;
+
+/*
+    벌크 update / delete 를 id 구간(청크) 단위로 나눠서 실행
+    update member set ... where age < 28 한 방으로 보내면 큰 테이블에서는 락을 오래 잡고 undo 로그가 커짐
+    -> id 기준으로 chunkSize 건씩 끊어서 청크마다 따로 커밋 (REQUIRES_NEW)
+
+    - 청크 경계는 member_id 인덱스만 보고 정함 (조건과 상관없이 한 청크가 잠그는 행은 최대 chunkSize 건)
+    - 조건에 맞는 최소 / 최대 id 사이만 돌기 때문에 조건에 맞는 행이 몰려 있으면 청크 수도 줄어듦
+    - id 순서로 한 번씩만 지나가서 age = age + 1 같은 update 도 같은 행을 두 번 건드리지 않음
+    - 청크가 커밋될 때마다 progress 로 누적 결과를 넘김
+    - 팀 요약(TeamStatsSummary) 은 청크가 건드린 팀만 다시 계산하도록 구문 전후의 팀 id 를 넘김
+      (구문 전 : 조건에 맞는 행을 잠그면서 읽음, 어차피 구문이 잠글 행 / update 후 : 옮겨 간 팀까지 구간 전체)
+      중간에 실패하면 그 전 청크까지는 커밋되어 있음 (BulkProgress.lastId 까지)
+
+    영속성 컨텍스트 정리
+      호출한 쪽에 트랜잭션이 있으면 (영속성 컨텍스트가 살아 있으면) 청크가 커밋될 때마다
+      그 구간의 Member 를 update 는 refresh, delete 는 detach 함
+      (벌크 연산은 영속성 컨텍스트를 거치지 않기 때문에 그냥 두면 옛날 값이 보임)
+      team.members 처럼 이미 로딩된 컬렉션에 들어 있는 삭제된 Member 는 빠지지 않음
+
+    주의) 조건은 Member 필드만 쓸 수 있음 (JPQL 벌크 연산은 join 불가)
+         호출한 트랜잭션에서 같은 행을 수정하고 flush 했다면 청크 트랜잭션이 그 락을 기다리다 타임아웃 남
+ */
+@Repository
+public class MemberBulkRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(MemberBulkRepository.class);
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate chunkTx;
+    private final TeamStatsSummary teamStats;
+    private final int defaultChunkSize;
+
+    public MemberBulkRepository(EntityManager em, PlatformTransactionManager transactionManager,
+                                TeamStatsSummary teamStats,
+                                @Value("${member.bulk.chunk-size:1000}") int defaultChunkSize) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.teamStats = teamStats;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.defaultChunkSize = defaultChunkSize;
+    }
+
+    /*
+        bulkRepository.update(member.age.lt(28), set -> set.set(member.username, "비회원"), progress -> ...)
+        assignments 에서는 set 만 호출 (where / execute 는 여기서 함)
+     */
+    public BulkProgress update(Predicate condition, Consumer<JPAUpdateClause> assignments,
+                               Consumer<BulkProgress> progress) {
+        return update(condition, assignments, defaultChunkSize, progress);
+    }
+
+    public BulkProgress update(Predicate condition, Consumer<JPAUpdateClause> assignments, int chunkSize,
+                               Consumer<BulkProgress> progress) {
+        return inChunks(condition, chunkSize, false, progress, (lower, upper) -> {
+            JPAUpdateClause update = queryFactory.update(member);
+            assignments.accept(update);
+            return update
+                    .where(member.id.gt(lower), member.id.loe(upper), condition)
+                    .execute();
+        });
+    }
+
+    public BulkProgress delete(Predicate condition, Consumer<BulkProgress> progress) {
+        return delete(condition, defaultChunkSize, progress);
+    }
+
+    public BulkProgress delete(Predicate condition, int chunkSize, Consumer<BulkProgress> progress) {
+        return inChunks(condition, chunkSize, true, progress, (lower, upper) -> queryFactory
+                .delete(member)
+                .where(member.id.gt(lower), member.id.loe(upper), condition)
+                .execute());
+    }
+
+    private BulkProgress inChunks(Predicate condition, int chunkSize, boolean deletes,
+                                  Consumer<BulkProgress> progress, ChunkStatement statement) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize 는 1 이상이어야 합니다: " + chunkSize);
+        }
+        long start = System.nanoTime();
+
+        Tuple range = queryFactory
+                .select(member.id.min(), member.id.max())
+                .from(member)
+                .where(condition)
+                .fetchOne();
+        Long minId = range == null ? null : range.get(member.id.min());
+        Long maxId = range == null ? null : range.get(member.id.max());
+        if (minId == null) {
+            return new BulkProgress(0, 0, null, (System.nanoTime() - start) / 1_000_000);
+        }
+
+        long rows = 0;
+        int chunks = 0;
+        long lower = minId - 1;
+        while (lower < maxId) {
+            long from = lower;
+            long[] chunk = chunkTx.execute(status -> {
+                long upper = upperBound(from, maxId, chunkSize);
+                Set<Long> teams = new HashSet<>(queryFactory
+                        .select(member.team.id)
+                        .from(member)
+                        .where(member.id.gt(from), member.id.loe(upper), condition)
+                        .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                        .fetch());
+                long affected = statement.execute(from, upper);
+                if (!deletes) {
+                    teams.addAll(queryFactory
+                            .select(member.team.id).distinct()
+                            .from(member)
+                            .where(member.id.gt(from), member.id.loe(upper))
+                            .fetch());
+                }
+                teamStats.bulkTouched(teams);
+                return new long[]{upper, affected};
+            });
+            long upper = chunk[0];
+            rows += chunk[1];
+            chunks++;
+            lower = upper;
+
+            syncPersistenceContext(from, upper, deletes);
+
+            BulkProgress current = new BulkProgress(rows, chunks, upper, (System.nanoTime() - start) / 1_000_000);
+            log.debug("bulk {} chunk {} ({}, {}] -> {} rows", deletes ? "delete" : "update", chunks, from, upper, chunk[1]);
+            progress.accept(current);
+        }
+        return new BulkProgress(rows, chunks, lower, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // (lower, maxId] 에서 chunkSize 번째 id, 남은 게 그보다 적으면 maxId
+    private long upperBound(long lower, long maxId, int chunkSize) {
+        Long upper = queryFactory
+                .select(member.id)
+                .from(member)
+                .where(member.id.gt(lower), member.id.loe(maxId))
+                .orderBy(member.id.asc())
+                .offset(chunkSize - 1)
+                .limit(1)
+                .fetchOne();
+        return upper != null ? upper : maxId;
+    }
+
+    // 호출한 쪽 영속성 컨텍스트에 있는 (lower, upper] 구간 Member 를 DB 와 맞춤
+    private void syncPersistenceContext(long lower, long upper, boolean deletes) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContextInternal().reentrantSafeEntityEntries()) {
+            EntityEntry entityEntry = entry.getValue();
+            if (!(entry.getKey() instanceof Member)
+                    || entityEntry.getStatus() == Status.DELETED || entityEntry.getStatus() == Status.GONE) {
+                continue;
+            }
+            Long id = (Long) entityEntry.getId();
+            if (id == null || id <= lower || id > upper) {
+                continue;
+            }
+            if (deletes) {
+                em.detach(entry.getKey());
+            } else {
+                em.refresh(entry.getKey());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkStatement {
+        long execute(long lower, long upper);
+    }
+}
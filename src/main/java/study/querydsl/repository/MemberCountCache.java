@@ -0,0 +1,54 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.support.SharedReads;
+import study.querydsl.support.TableChangeNotifier;
+import study.querydsl.support.TtlLruCache;
+
+import java.util.function.LongSupplier;
+
+/*
+    searchPageComplex 의 count 쿼리 결과 캐시
+    같은 조건으로 페이지를 넘길 때는 count 를 한 번만 실행함
+    member / team 테이블에 변경이 생기면 전부 비움
+ */
+@Component
+public class MemberCountCache {
+
+    private final TtlLruCache<MemberSearchCondition, Long> cache;
+
+    public MemberCountCache(TableChangeNotifier notifier,
+                            @Value("${member.count-cache.max-size:1000}") int maxSize,
+                            @Value("${member.count-cache.ttl-seconds:30}") long ttlSeconds) {
+        this.cache = new TtlLruCache<>(maxSize, ttlSeconds * 1000);
+        notifier.addListener(table -> {
+            if ("member".equals(table) || "team".equals(table)) {
+                cache.invalidateAll();
+            }
+        });
+    }
+
+    // 캐시에 있으면 값, 없거나 공유하면 안 되는 상황이면 null
+    public Long cached(MemberSearchCondition condition) {
+        return SharedReads.isShareable() ? cache.get(condition.normalized()) : null;
+    }
+
+    public long count(MemberSearchCondition condition, LongSupplier countQuery) {
+        if (!SharedReads.isShareable()) {
+            return countQuery.getAsLong();
+        }
+
+        MemberSearchCondition key = condition.normalized();
+        Long cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = cache.generation();
+        long total = countQuery.getAsLong();
+        cache.put(key, total, generation);
+        return total;
+    }
+}
@@ -0,0 +1,327 @@
+package study.querydsl.repository;
+
+import com.querydsl.collections.CollQuery;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.EntityChangeListener;
+import study.querydsl.support.EntityChangeNotifier;
+import study.querydsl.support.SharedReads;
+import study.querydsl.support.SnapshotMaintainer;
+import study.querydsl.support.TableChangeNotifier;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    Member / Team 메모리 스냅샷 (member.hot-set.enabled=true 일 때만)
+    MemberRepository(QuerydslPredicateExecutor) 에 넘기는 Predicate 와 search 조건을
+    querydsl-collections(CollQuery) 로 스냅샷에 그대로 실행함 (DB 안 감)
+
+    - 시작할 때 member / team 을 스트리밍으로 읽어서 만들고, 이후 엔티티 변경은 커밋된 뒤에 한 건씩 반영
+    - 벌크 연산은 어떤 행이 바뀌었는지 모르므로 커밋 후 백그라운드에서 다시 만듦 (SnapshotMaintainer)
+    - 스냅샷의 Member / Team 은 DB 와 연결 안 된 복사본, 요청끼리 공유하므로 꺼낸 쪽에서 수정하면 안 됨
+      team.members 컬렉션은 채우지 않음 (컬렉션 경로를 쓰는 Predicate 는 JPA 쪽으로)
+    - 결과 순서는 member id 순
+    - 쓰기 트랜잭션 안에서는 아직 반영 안 된 자기 변경이 안 보이므로 search 는 DB 로 감 (isServing)
+
+    check : 같은 조건을 DB 에도 실행해서 결과가 같은지 비교 (member.hot-set.check 메트릭)
+           동시에 쓰기가 있으면 잠깐 다를 수 있음
+ */
+@Component
+public class MemberHotSet implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MemberHotSet.class);
+
+    private static final int LOAD_FETCH_SIZE = 1000;
+
+    private final EntityManager em;
+    private final TransactionTemplate loadTx;
+    private final boolean enabled;
+    private final Counter checkMatch;
+    private final Counter checkMismatch;
+    // 처음 다 만들어지기 전에는 null (isServing 이 false)
+    private final SnapshotMaintainer<Snapshot> snapshot;
+
+    public MemberHotSet(EntityManager em, PlatformTransactionManager transactionManager,
+                        EntityChangeNotifier entityNotifier, TableChangeNotifier tableNotifier,
+                        MeterRegistry meterRegistry,
+                        @Value("${member.hot-set.enabled:false}") boolean enabled) {
+        this.em = em;
+        // 커밋 후 반영하는 변경과 맞아야 하므로 복제본이 아닌 원본에서 읽음 (읽기 전용이면 복제본으로 감)
+        this.loadTx = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.snapshot = new SnapshotMaintainer<>("member-hot-set", null, this::load);
+        this.checkMatch = Counter.builder("member.hot-set.check").tag("result", "match").register(meterRegistry);
+        this.checkMismatch = Counter.builder("member.hot-set.check").tag("result", "mismatch").register(meterRegistry);
+        Gauge.builder("member.hot-set.size", this, MemberHotSet::size).register(meterRegistry);
+
+        if (enabled) {
+            snapshot.listen(entityNotifier, tableNotifier, new RowChangeListener(), "member", "team");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    // 스냅샷이 만들어져 있고 지금 트랜잭션에서 공유된 결과를 봐도 되면 true
+    public boolean isServing() {
+        return snapshot.current() != null && SharedReads.isShareable();
+    }
+
+    public List<Member> findAll(Predicate predicate, OrderSpecifier<?>... orders) {
+        return query(predicate).orderBy(orders).fetch();
+    }
+
+    public long count(Predicate predicate) {
+        return query(predicate).fetchCount();
+    }
+
+    public boolean exists(Predicate predicate) {
+        return query(predicate).fetchFirst() != null;
+    }
+
+    // MemberJpaRepository.search 와 같은 조건 (팀이 없는 회원도 포함 = left join)
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return query(searchPredicate(condition, member.team.name)).fetch().stream()
+                .map(MemberHotSet::toDto)
+                .collect(Collectors.toList());
+    }
+
+    public boolean check(MemberSearchCondition condition) {
+        List<MemberTeamDto> expected = loadTx.execute(status -> new JPAQueryFactory(em)
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(searchPredicate(condition, team.name))
+                .fetch());
+        return compare("search " + condition, expected, search(condition));
+    }
+
+    public boolean check(Predicate predicate) {
+        List<Long> expected = loadTx.execute(status -> new JPAQueryFactory(em)
+                .select(member.id)
+                .from(member)
+                .where(predicate)
+                .fetch());
+        List<Long> actual = findAll(predicate).stream().map(Member::getId).collect(Collectors.toList());
+        return compare("predicate " + predicate, expected, actual);
+    }
+
+    public int size() {
+        Snapshot current = snapshot.current();
+        return current == null ? 0 : current.members.size();
+    }
+
+    // 시작할 때 / 벌크 연산 후에 한 번에 하나씩만 돎
+    public void rebuild() {
+        snapshot.rebuild();
+    }
+
+    private Snapshot load() {
+        Snapshot fresh = new Snapshot();
+        long start = System.nanoTime();
+        loadTx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            try (Stream<Tuple> rows = queryFactory
+                    .select(team.id, team.name)
+                    .from(team)
+                    .setHint(QueryHints.HINT_FETCH_SIZE, LOAD_FETCH_SIZE)
+                    .stream()) {
+                rows.forEach(row -> fresh.putTeam(row.get(team.id), row.get(team.name)));
+            }
+            try (Stream<Tuple> rows = queryFactory
+                    .select(member.id, member.username, member.age, member.team.id)
+                    .from(member)
+                    .setHint(QueryHints.HINT_FETCH_SIZE, LOAD_FETCH_SIZE)
+                    .stream()) {
+                rows.forEach(row -> fresh.putMember(row.get(member.id), row.get(member.username),
+                        row.get(member.age), row.get(member.team.id)));
+            }
+        });
+        log.info("member hot set built: {} members, {} teams in {} ms",
+                fresh.members.size(), fresh.teams.size(), (System.nanoTime() - start) / 1_000_000);
+        return fresh;
+    }
+
+    private CollQuery<Member> query(Predicate predicate) {
+        Snapshot current = snapshot.current();
+        if (current == null) {
+            throw new IllegalStateException("member hot set 이 아직 만들어지지 않았습니다.");
+        }
+        return new CollQuery<Member>().from(member, current.members.values()).where(predicate);
+    }
+
+    /*
+        CollQuery 는 where 의 member.team.name 을 팀이 없으면 false 로 봄 (left join + team.name = ? 와 같음)
+        JPA 쪽에서 member.team.name 을 쓰면 inner join 이 되므로 left join 한 team.name 을 넘김
+     */
+    private static BooleanBuilder searchPredicate(MemberSearchCondition condition, StringPath teamName) {
+        BooleanBuilder builder = new BooleanBuilder();
+        if (hasText(condition.getUsername())) {
+            builder.and(member.username.eq(condition.getUsername()));
+        }
+        if (hasText(condition.getTeamName())) {
+            builder.and(teamName.eq(condition.getTeamName()));
+        }
+        if (condition.getAgeGoe() != null) {
+            builder.and(member.age.goe(condition.getAgeGoe()));
+        }
+        if (condition.getAgeLoe() != null) {
+            builder.and(member.age.loe(condition.getAgeLoe()));
+        }
+        return builder;
+    }
+
+    private static MemberTeamDto toDto(Member m) {
+        Team t = m.getTeam();
+        return new MemberTeamDto(m.getId(), m.getUsername(), m.getAge(),
+                t != null ? t.getId() : null, t != null ? t.getName() : null);
+    }
+
+    // DB 결과는 순서가 정해져 있지 않으므로 id 순으로 맞춰서 비교
+    private <T> boolean compare(String what, List<T> expected, List<T> actual) {
+        Comparator<Object> byString = Comparator.comparing(String::valueOf);
+        List<T> sortedExpected = new ArrayList<>(expected);
+        List<T> sortedActual = new ArrayList<>(actual);
+        sortedExpected.sort(byString);
+        sortedActual.sort(byString);
+        if (sortedExpected.equals(sortedActual)) {
+            checkMatch.increment();
+            return true;
+        }
+        checkMismatch.increment();
+        log.warn("member hot set mismatch: {} (db {} rows, hot set {} rows)", what, expected.size(), actual.size());
+        return false;
+    }
+
+    @Override
+    public void destroy() {
+        snapshot.shutdown();
+    }
+
+    private class RowChangeListener implements EntityChangeListener {
+
+        @Override
+        public void onInsert(PostInsertEvent event) {
+            changed(event.getEntity(), (Long) event.getId(), event.getState(), event.getPersister().getEntityMetamodel());
+        }
+
+        @Override
+        public void onUpdate(PostUpdateEvent event) {
+            changed(event.getEntity(), (Long) event.getId(), event.getState(), event.getPersister().getEntityMetamodel());
+        }
+
+        @Override
+        public void onDelete(PostDeleteEvent event) {
+            Long id = (Long) event.getId();
+            if (event.getEntity() instanceof Member) {
+                snapshot.applyAfterCommit(s -> s.removeMember(id));
+            } else if (event.getEntity() instanceof Team) {
+                snapshot.applyAfterCommit(s -> s.teams.remove(id));
+            }
+        }
+
+        private void changed(Object entity, Long id, Object[] state, EntityMetamodel metamodel) {
+            if (entity instanceof Member) {
+                String username = (String) state[metamodel.getPropertyIndex("username")];
+                int age = (Integer) state[metamodel.getPropertyIndex("age")];
+                Long teamId = SnapshotMaintainer.teamId(state[metamodel.getPropertyIndex("team")]);
+                snapshot.applyAfterCommit(s -> s.putMember(id, username, age, teamId));
+            } else if (entity instanceof Team) {
+                String name = (String) state[metamodel.getPropertyIndex("name")];
+                snapshot.applyAfterCommit(s -> s.putTeam(id, name));
+            }
+        }
+    }
+
+    /*
+        복사본은 바꾸지 않고 새로 만들어서 교체함 (읽는 쪽은 락 없이 봄)
+        팀 이름이 바뀌면 그 팀 회원 복사본도 새 팀을 가리키게 다시 만듦 (팀은 거의 안 바뀌므로 전체를 훑음)
+     */
+    private static class Snapshot {
+        private final ConcurrentSkipListMap<Long, Member> members = new ConcurrentSkipListMap<>();
+        private final Map<Long, Team> teams = new ConcurrentHashMap<>();
+
+        private void putTeam(Long id, String name) {
+            Team copy = new Team(name);
+            copy.setId(id);
+            teams.put(id, copy);
+            for (Member m : members.values()) {
+                if (m.getTeam() != null && id.equals(m.getTeam().getId())) {
+                    members.put(m.getId(), copy(m.getId(), m.getUsername(), m.getAge(), copy));
+                }
+            }
+        }
+
+        private void putMember(Long id, String username, int age, Long teamId) {
+            Team teamCopy = null;
+            if (teamId != null) {
+                // 팀 insert 는 회원보다 먼저 반영되므로 보통은 있음, 없으면 id 만 아는 팀으로 둠
+                teamCopy = teams.computeIfAbsent(teamId, key -> {
+                    Team unknown = new Team(null);
+                    unknown.setId(key);
+                    return unknown;
+                });
+            }
+            members.put(id, copy(id, username, age, teamCopy));
+        }
+
+        private void removeMember(Long id) {
+            members.remove(id);
+        }
+
+        // 생성자로 팀을 넣으면 team.members 에 쌓이므로 setTeam 으로 넣음
+        private static Member copy(Long id, String username, int age, Team team) {
+            Member copy = new Member(username, age);
+            copy.setId(id);
+            copy.setTeam(team);
+            return copy;
+        }
+    }
+}
@@ -3,20 +3,29 @@ package study.querydsl.repository;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import study.querydsl.dto.BulkInsertResult;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QTeam;
+import study.querydsl.support.ReadOnlyJPAQueryFactory;
 
 
 import javax.persistence.EntityManager;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.*;
 import static study.querydsl.entity.QMember.*;
@@ -25,17 +34,32 @@ import static study.querydsl.entity.QTeam.*;
 @Repository
 public class MemberJpaRepository {
 
+    // 스트리밍 조회 시 JDBC 드라이버가 한 번에 가져오는 행 수
+    private static final int STREAM_FETCH_SIZE = 500;
+
     // 순수 JPA이기 때문에 엔티티 매니저가 필요함
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    // 수정 안 할 엔티티 목록 조회용 (스냅샷 / dirty checking 없음)
+    private final JPAQueryFactory readOnlyQueryFactory;
+    private final MemberSearchQueryTemplates queryTemplates;
+    private final MemberResultCache resultCache;
+    private final MemberHotSet hotSet;
+    private final int bulkFlushSize;
 
 /*
     취향 차이 아래 처럼 Bean 등록하고 써도 됨
     하지만 위에 방식으로 하면 테스트 할때 주입 받을게 하나라 좀 편함
  */
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, MemberSearchQueryTemplates queryTemplates, MemberResultCache resultCache,
+                               MemberHotSet hotSet, @Value("${member.bulk.flush-size:1000}") int bulkFlushSize) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.readOnlyQueryFactory = new ReadOnlyJPAQueryFactory(em);
+        this.queryTemplates = queryTemplates;
+        this.resultCache = resultCache;
+        this.hotSet = hotSet;
+        this.bulkFlushSize = bulkFlushSize;
     }
 //    public MemberJpaRepository(EntityManager em,JPAQueryFactory queryFactory) {
 //        this.em = em;
@@ -46,35 +70,68 @@ public class MemberJpaRepository {
         em.persist(member);
     }
 
+    /*
+        대량 저장용
+        flushSize 마다 flush (JDBC 배치로 insert 전송) + clear (영속성 컨텍스트 비움) 해서
+        몇 백만 건을 넣어도 영속성 컨텍스트가 계속 커지지 않음
+        주의) clear 하기 때문에 호출 전에 영속 상태였던 엔티티도 전부 준영속이 됨
+             팀은 em.getReference 로 받은 프록시를 member.setTeam 으로 넣는 것이 좋음
+             (생성자로 넣으면 team.members 컬렉션에 계속 쌓임)
+     */
+    @Transactional
+    public BulkInsertResult saveAll(Stream<Member> members) {
+        long start = System.nanoTime();
+        long rows = 0;
+
+        Iterator<Member> iterator = members.iterator();
+        while (iterator.hasNext()) {
+            em.persist(iterator.next());
+            if (++rows % bulkFlushSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+
+        return new BulkInsertResult(rows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Transactional(readOnly = true)
     public Optional<Member> findById(Long id){
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll(){
         return em.createQuery("select m from Member m",Member.class).getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll_Querydsl(){
-        return queryFactory
+        return readOnlyQueryFactory
                 .selectFrom(member)
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUserName(String username){
         return em.createQuery("select m from Member m where m.username = :username",Member.class)
                 .setParameter("username",username)
                 .getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUserName_Querydsl(String username){
-        return queryFactory
+        return readOnlyQueryFactory
                 .selectFrom(member)
                 .where(member.username.eq(username))
                 .fetch();
     }
 
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition){
 
         BooleanBuilder builder =new BooleanBuilder();
@@ -107,24 +164,33 @@ public class MemberJpaRepository {
 
 
 
+    // where 파라미터 방식과 같은 결과, 조건 모양별로 미리 만들어 둔 JPQL 사용 (MemberSearchQueryTemplates)
+    // 결과 캐시가 켜져 있으면 캐시된 결과 (MemberResultCache), 메모리 스냅샷이 켜져 있으면 DB 대신 스냅샷 (MemberHotSet)
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition){
+        return resultCache.search(condition, () -> hotSet.isServing()
+                ? hotSet.search(condition)
+                : queryTemplates.search(em, condition));
+    }
 
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+    /*
+        search 와 같은 쿼리지만 결과를 리스트로 모으지 않고 한 행씩 consumer 에 넘김
+        하이버네이트 scroll(FORWARD_ONLY) 위에서 fetch size 단위로 읽기 때문에 결과가 커져도 메모리는 일정함
+        DTO 프로젝션이라 영속성 컨텍스트에 엔티티가 쌓이지 않음 (따로 detach 할 필요 없음)
+        consumer 에서 예외가 나면 (ex. 클라이언트 연결 끊김) 바로 커서를 닫고 중단
+     */
+    @Transactional(readOnly = true)
+    public void searchStream(MemberSearchCondition condition, Consumer<MemberTeamDto> consumer) {
+        try (Stream<MemberTeamDto> stream = streamQuery(queryFactory, condition).stream()) {
+            stream.forEach(consumer);
+        }
+    }
+
+    // searchStream 의 조회, searchPageSimple 과 같은 join (MemberSearchIndexAdvisor 도 이걸로 플랜을 봄)
+    static JPAQuery<MemberTeamDto> streamQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition) {
+        return MemberRepositoryImpl.memberTeamQuery(queryFactory, condition)
+                .setHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true);
     }
 
     // BooleanExpression 이 predicate 보다 좋음
@@ -150,11 +216,17 @@ public class MemberJpaRepository {
         return ageLoe(ageLoe).and(ageGoe(ageGoe));
     }
 
+    @Transactional(readOnly = true)
     public List<Member> searchMember(MemberSearchCondition condition){
 
-        return queryFactory
-                .selectFrom(member)
-                .leftJoin(member.team, team)
+        JPAQuery<Member> query = readOnlyQueryFactory.selectFrom(member);
+        // 팀 이름 조건이 있으면 inner join (outer join 이면 H2 가 member 부터 전체를 읽음)
+        if (hasText(condition.getTeamName())) {
+            query.join(member.team, team);
+        } else {
+            query.leftJoin(member.team, team);
+        }
+        return query
                 .where(
                         usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
@@ -2,7 +2,10 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.CountStrategy;
+import study.querydsl.dto.MemberPage;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSlice;
 import study.querydsl.dto.MemberTeamDto;
 
 import java.util.List;
@@ -11,4 +14,7 @@ public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable);
+    MemberPage searchPage(MemberSearchCondition condition, Pageable pageable, CountStrategy countStrategy);
+    MemberSlice searchSlice(MemberSearchCondition condition, String cursor, int size);
 }
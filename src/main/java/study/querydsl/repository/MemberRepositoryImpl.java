@@ -1,71 +1,82 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.Tuple;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.CountStrategy;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberPage;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSlice;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
-import study.querydsl.entity.Member;
+import study.querydsl.support.ParallelQueryExecutor;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+// 전부 조회라 읽기 전용 트랜잭션 (라우팅이 켜져 있으면 복제본에서 읽음)
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
+    private static final int ESTIMATE_WINDOWS = 4;
+
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchQueryTemplates queryTemplates;
+    private final MemberCountCache countCache;
+    private final MemberResultCache resultCache;
+    private final MeterRegistry meterRegistry;
+    private final ParallelQueryExecutor parallelQueryExecutor;
+    private final long estimateSampleSpan;
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, MemberSearchQueryTemplates queryTemplates, MemberCountCache countCache,
+                                MemberResultCache resultCache, MeterRegistry meterRegistry, ParallelQueryExecutor parallelQueryExecutor,
+                                @Value("${member.count-estimate.sample-span:10000}") long estimateSampleSpan) {
+        this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.queryTemplates = queryTemplates;
+        this.countCache = countCache;
+        this.resultCache = resultCache;
+        this.meterRegistry = meterRegistry;
+        this.parallelQueryExecutor = parallelQueryExecutor;
+        this.estimateSampleSpan = estimateSampleSpan;
     }
 
+    // 조건 모양별로 미리 만들어 둔 JPQL 에 파라미터만 바인딩 (MemberSearchQueryTemplates 참고)
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition){
-
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+        return queryTemplates.search(em, condition);
     }
 
+    // 결과 캐시가 켜져 있으면 캐시된 페이지 (MemberResultCache)
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
+        return resultCache.searchPage(condition, pageable, () -> fetchPageSimple(condition, pageable));
+    }
+
+    private Page<MemberTeamDto> fetchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        QueryResults<MemberTeamDto> results = memberTeamQuery(queryFactory, condition)
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
@@ -76,60 +87,246 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
         return new PageImpl<>(content,pageable,total);
     }
 
-    @Override
-    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
+    /*
+        searchPageSimple(content, count) / searchSlice 가 같이 쓰는 조회 (MemberSearchIndexAdvisor 도 이걸로 플랜을 봄)
+        팀 이름 조건이 있으면 inner join (MemberSearchQueryTemplates.contentQuery 참고)
+     */
+    static JPAQuery<MemberTeamDto> memberTeamQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition) {
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
                         member.age,
                         team.id.as("teamId"),
                         team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
+                .from(member);
+        if (hasText(condition.getTeamName())) {
+            query.join(member.team, team);
+        } else {
+            query.leftJoin(member.team, team);
+        }
+        return query.where(
+                usernameEq(condition.getUsername()),
+                teamNameEq(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        );
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        List<MemberTeamDto> content = queryTemplates.search(em, condition, pageable.getOffset(), pageable.getPageSize());
+
+        // count 가 필요 없는 경우(첫 페이지인데 size 보다 적게 나옴 등)에는 실행 안 함
+        // 페이지를 넘겨도 같은 조건이면 count 는 캐시된 값을 씀
+        return PageableExecutionUtils.getPage(content,pageable, () -> countCache.count(condition, () -> timedCount(em, condition)));
+//        return new PageImpl<>(content,pageable,total);
+    }
+
+    /*
+        searchPageComplex 와 같은 결과, count 를 별도 커넥션에서 content 조회와 동시에 실행
+        페이지 응답 시간이 content + count 합이 아니라 둘 중 긴 쪽이 됨
+        병렬로 못 돌리는 경우(쓰기 트랜잭션, 스레드/커넥션 부족)는 searchPageComplex 처럼 순서대로 실행
+     */
+    @Override
+    public Page<MemberTeamDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable) {
+        Future<Long> count = countCache.cached(condition) == null
+                ? parallelQueryExecutor.trySubmit(countEm -> countCache.count(condition, () -> timedCount(countEm, condition)))
+                : null;
+
+        List<MemberTeamDto> content;
+        try {
+            content = queryTemplates.search(em, condition, pageable.getOffset(), pageable.getPageSize());
+        } catch (RuntimeException e) {
+            if (count != null) {
+                count.cancel(true);
+            }
+            throw e;
+        }
+
+        if (count == null) {
+            return PageableExecutionUtils.getPage(content, pageable, () -> countCache.count(condition, () -> timedCount(em, condition)));
+        }
+        Page<MemberTeamDto> page = PageableExecutionUtils.getPage(content, pageable, () -> ParallelQueryExecutor.join(count));
+        // count 가 필요 없었으면 (마지막 페이지 등) 아직 돌고 있는 count 를 취소해서 커넥션을 바로 돌려줌
+        if (!count.isDone()) {
+            count.cancel(true);
+        }
+        return page;
+    }
+
+    /*
+        전체 건수를 CountStrategy 에 따라 구함
+        넓은 조건에서는 정확한 count(*) 가 페이지 조회보다 비싸므로 "10000+" 나 추정값으로 충분할 때 사용
+        마지막 페이지인 게 확실하면 (size 보다 적게 나옴) 어떤 전략이든 count 없이 정확한 값
+     */
+    @Override
+    public MemberPage searchPage(MemberSearchCondition condition, Pageable pageable, CountStrategy countStrategy) {
+        List<MemberTeamDto> content = queryTemplates.search(em, condition, pageable.getOffset(), pageable.getPageSize());
+        long seen = pageable.getOffset() + content.size();
+
+        boolean lastPage = content.size() < pageable.getPageSize() && (pageable.getOffset() == 0 || !content.isEmpty());
+        if (lastPage) {
+            return memberPage(content, pageable, seen, true, countStrategy);
+        }
+
+        switch (countStrategy.getType()) {
+            case CAPPED:
+                return cappedPage(condition, content, pageable, countStrategy, seen);
+            case ESTIMATED:
+                return estimatedPage(condition, content, pageable, countStrategy, seen);
+            default:
+                long total = countCache.count(condition, () -> timedCount(em, condition));
+                return memberPage(content, pageable, total, true, countStrategy);
+        }
+    }
+
+    // cap + 1 건 까지만 셈 (DB 는 cap + 1 건을 찾으면 멈추고, 행은 앱으로 가져오지 않음)
+    private MemberPage cappedPage(MemberSearchCondition condition, List<MemberTeamDto> content, Pageable pageable,
+                                  CountStrategy countStrategy, long seen) {
+        long found = limitedCount(condition, countStrategy.getCap() + 1);
+        boolean exact = found <= countStrategy.getCap();
+        long total = Math.max(Math.min(found, countStrategy.getCap()), seen);
+        return memberPage(content, pageable, total, exact, countStrategy);
+    }
+
+    /*
+        select count(*) from (select 1 from member ... limit :limit)
+        JPQL 은 from 절 서브쿼리가 안 돼서 네이티브 SQL (조건은 filtered 와 같음)
+     */
+    private long limitedCount(MemberSearchCondition condition, long limit) {
+        StringBuilder sql = new StringBuilder("select count(*) from (select 1 from member m");
+        if (hasText(condition.getTeamName())) {
+            sql.append(" join team t on t.id = m.team_id");
+        }
+        sql.append(" where 1 = 1");
+        Map<String, Object> params = new LinkedHashMap<>();
+        if (hasText(condition.getUsername())) {
+            sql.append(" and m.username = :username");
+            params.put("username", condition.getUsername());
+        }
+        if (hasText(condition.getTeamName())) {
+            sql.append(" and t.name = :teamName");
+            params.put("teamName", condition.getTeamName());
+        }
+        if (condition.getAgeGoe() != null) {
+            sql.append(" and m.age >= :ageGoe");
+            params.put("ageGoe", condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            sql.append(" and m.age <= :ageLoe");
+            params.put("ageLoe", condition.getAgeLoe());
+        }
+        sql.append(" limit :limit) limited");
 
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
+        Query query = em.createNativeQuery(sql.toString());
+        params.forEach(query::setParameter);
+        query.setParameter("limit", limit);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    /*
+        id 는 시퀀스로 거의 빈틈없이 늘어나므로 id 구간(합쳐서 sample-span)에서 조건에 맞는 건수를 세고
+        전체 id 범위(min ~ max) 비율 만큼 늘려서 추정 (쿼리 두 번 모두 PK 범위만 읽음)
+        구간은 id 범위를 ESTIMATE_WINDOWS 등분한 칸마다 가운데 하나씩 고정 -> 데이터가 같으면 추정값도 같음
+        id 범위가 구간보다 작으면 그냥 정확하게 셈
+     */
+    private MemberPage estimatedPage(MemberSearchCondition condition, List<MemberTeamDto> content, Pageable pageable,
+                                     CountStrategy countStrategy, long seen) {
+        Tuple range = queryFactory
+                .select(member.id.min(), member.id.max())
                 .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
+                .fetchOne();
+        Long minId = range != null ? range.get(member.id.min()) : null;
+        Long maxId = range != null ? range.get(member.id.max()) : null;
+        if (minId == null || maxId == null) {
+            return memberPage(content, pageable, seen, true, countStrategy);
+        }
 
+        long span = maxId - minId + 1;
+        if (span <= estimateSampleSpan) {
+            long total = countCache.count(condition, () -> timedCount(em, condition));
+            return memberPage(content, pageable, total, true, countStrategy);
+        }
 
+        long window = Math.max(1, estimateSampleSpan / ESTIMATE_WINDOWS);
+        long stride = span / ESTIMATE_WINDOWS;
+        BooleanBuilder windows = new BooleanBuilder();
+        for (int i = 0; i < ESTIMATE_WINDOWS; i++) {
+            long from = minId + i * stride + (stride - window) / 2;
+            windows.or(member.id.between(from, from + window - 1));
+        }
+        Long matched = filtered(condition)
+                .select(member.count())
+                .where(windows)
+                .fetchOne();
+        long estimate = Math.round((matched != null ? matched : 0) * (double) span / (window * ESTIMATE_WINDOWS));
+        return memberPage(content, pageable, Math.max(estimate, seen), false, countStrategy);
+    }
 
+    // 조건만 걸린 from 절 (팀 조건이 없으면 팀 조인 생략)
+    private JPAQuery<?> filtered(MemberSearchCondition condition) {
+        JPAQuery<?> query = queryFactory.from(member);
+        if (hasText(condition.getTeamName())) {
+            query.join(member.team, team);
+        }
+        return query.where(
+                usernameEq(condition.getUsername()),
+                teamNameEq(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        );
+    }
 
-        return PageableExecutionUtils.getPage(content,pageable, countQuery::fetchCount);
-//        return new PageImpl<>(content,pageable,total);
+    private static MemberPage memberPage(List<MemberTeamDto> content, Pageable pageable, long total, boolean exact,
+                                         CountStrategy countStrategy) {
+        return new MemberPage(content, pageable.getPageNumber(), pageable.getPageSize(), total, exact, countStrategy);
+    }
+
+    /*
+        offset 페이징은 뒤로 갈수록 버리는 행이 많아져서 느려짐
+        (age, member.id) 기준으로 마지막 행 다음부터 size + 1 개만 읽어서 다음 페이지가 있는지 판단
+     */
+    @Override
+    public MemberSlice searchSlice(MemberSearchCondition condition, String cursor, int size) {
+        List<MemberTeamDto> content = memberTeamQuery(queryFactory, condition)
+                .where(after(MemberCursor.decode(cursor)))
+                .orderBy(member.age.asc(), member.id.asc())
+                .limit(size + 1)
+                .fetch();
+
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content = new ArrayList<>(content.subList(0, size));
+        }
+        String nextCursor = hasNext ? MemberCursor.of(content.get(size - 1)).encode() : null;
+
+        return new MemberSlice(content, nextCursor, hasNext);
+    }
+
+    // count 쿼리에 걸린 시간만 따로 기록 (캐시에서 나간 경우는 실행이 안 되므로 기록 안 됨)
+    private long timedCount(EntityManager entityManager, MemberSearchCondition condition) {
+        Timer timer = Timer.builder("member.repository.count")
+                .tag("shape", MemberSearchQueryTemplates.shapeName(MemberSearchQueryTemplates.shapeOf(condition)))
+                .register(meterRegistry);
+        return timer.record(() -> queryTemplates.count(entityManager, condition));
     }
 
     // BooleanExpression 이 predicate 보다 좋음
     // 블린익스프레션은 조합이 가능
-    private BooleanExpression usernameEq(String username) {
+    private static BooleanExpression usernameEq(String username) {
         return hasText(username) ? member.username.eq(username) : null ;
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
+    private static BooleanExpression teamNameEq(String teamName) {
         return hasText(teamName) ? team.name.eq(teamName) : null;
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
+    private static BooleanExpression ageGoe(Integer ageGoe) {
         return ageGoe != null ? member.age.goe(ageGoe) : null;
     }
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
+    private static BooleanExpression ageLoe(Integer ageLoe) {
         return ageLoe != null ? member.age.loe(ageLoe) : null;
 
     }
@@ -138,4 +335,13 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
         return ageLoe(ageLoe).and(ageGoe(ageGoe));
     }
 
+    // age 가 더 크거나, age 가 같으면 id 가 더 큰 행
+    private BooleanExpression after(MemberCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        return member.age.gt(cursor.getAge())
+                .or(member.age.eq(cursor.getAge()).and(member.id.gt(cursor.getMemberId())));
+    }
+
 }
@@ -0,0 +1,343 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Hibernate;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.EntityChangeListener;
+import study.querydsl.support.EntityChangeNotifier;
+import study.querydsl.support.SharedReads;
+import study.querydsl.support.TableChangeListener;
+import study.querydsl.support.TableChangeNotifier;
+import study.querydsl.support.TransactionSynchronizations;
+import study.querydsl.support.TtlLruCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+
+/*
+    search / searchPageSimple 결과 캐시 (member.result-cache.enabled=true 일 때만)
+    키는 조건(normalized) + pageable, 크기(max-size) / 만료시간(ttl-seconds) 제한
+
+    무효화는 결과가 의존하는 행이 바뀔 때만 (커밋된 뒤에)
+      Member 변경 : 결과에 그 회원이 있거나, 바뀌기 전 / 후 값이 조건에 맞으면
+                    (새로 조건에 들어오거나 빠지면 목록 / total 이 달라짐)
+      Team 변경   : 결과에 그 팀이 있거나, 조건의 팀명이 바뀌기 전 / 후 이름과 같으면
+      벌크 연산   : 어떤 행이 바뀌었는지 모르므로 전부 비움
+    회원의 팀이 로딩 안 된 프록시면 캐시된 결과에서 본 팀명을 쓰고, 그래도 모르면 팀명 조건은 맞는 것으로 봄
+
+    캐시된 DTO 는 요청끼리 공유되므로 꺼낸 쪽에서 수정하면 안 됨
+    쓰기 트랜잭션 안에서는 캐시를 쓰지 않음 (SharedReads)
+ */
+@Component
+public class MemberResultCache {
+
+    private static final int MAX_TEAM_NAMES = 10_000;
+
+    private final boolean enabled;
+    private final TtlLruCache<Key, Entry> cache;
+    private final EntityChangeNotifier entityNotifier;
+    private final MeterRegistry meterRegistry;
+    private final Counter invalidated;
+    // 캐시된 결과에서 본 팀 id -> 팀명 (팀이 바뀌면 지움)
+    private final Map<Long, String> teamNames = new ConcurrentHashMap<>();
+
+    public MemberResultCache(TableChangeNotifier tableNotifier, EntityChangeNotifier entityNotifier,
+                             MeterRegistry meterRegistry,
+                             @Value("${member.result-cache.enabled:false}") boolean enabled,
+                             @Value("${member.result-cache.max-size:500}") int maxSize,
+                             @Value("${member.result-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.cache = new TtlLruCache<>(maxSize, ttlSeconds * 1000);
+        this.entityNotifier = entityNotifier;
+        this.meterRegistry = meterRegistry;
+        this.invalidated = Counter.builder("member.result-cache.invalidated").register(meterRegistry);
+        Gauge.builder("member.result-cache.size", cache, TtlLruCache::size).register(meterRegistry);
+
+        if (enabled) {
+            entityNotifier.addListener(new RowChangeListener());
+            tableNotifier.addListener(new BulkStatementListener());
+        }
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition, Supplier<List<MemberTeamDto>> query) {
+        if (!enabled || !SharedReads.isShareable()) {
+            return query.get();
+        }
+        Key key = new Key("search", condition.normalized(), null);
+        Entry cached = get(key);
+        if (cached != null) {
+            @SuppressWarnings("unchecked")
+            List<MemberTeamDto> result = (List<MemberTeamDto>) cached.result;
+            return result;
+        }
+
+        long generation = cache.generation();
+        List<MemberTeamDto> result = Collections.unmodifiableList(query.get());
+        put(key, new Entry(result, result), generation);
+        return result;
+    }
+
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable,
+                                          Supplier<Page<MemberTeamDto>> query) {
+        if (!enabled || !SharedReads.isShareable()) {
+            return query.get();
+        }
+        Key key = new Key("searchPageSimple", condition.normalized(), pageable);
+        Entry cached = get(key);
+        if (cached != null) {
+            @SuppressWarnings("unchecked")
+            Page<MemberTeamDto> result = (Page<MemberTeamDto>) cached.result;
+            return result;
+        }
+
+        long generation = cache.generation();
+        Page<MemberTeamDto> page = query.get();
+        Page<MemberTeamDto> result = new PageImpl<>(Collections.unmodifiableList(page.getContent()), pageable,
+                page.getTotalElements());
+        put(key, new Entry(result, result.getContent()), generation);
+        return result;
+    }
+
+    private Entry get(Key key) {
+        Entry entry = cache.get(key);
+        Counter.builder("member.result-cache")
+                .tag("method", key.method)
+                .tag("result", entry != null ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+        return entry;
+    }
+
+    private void put(Key key, Entry entry, long generation) {
+        if (cache.put(key, entry, generation) && teamNames.size() < MAX_TEAM_NAMES) {
+            teamNames.putAll(entry.teamNames);
+        }
+    }
+
+    // 트랜잭션 안이면 커밋된 뒤에 한 번에, 아니면 바로
+    private void changed(BiPredicate<Key, Entry> change) {
+        PendingChanges pending = TransactionSynchronizations.getOrRegister(PendingChanges.class,
+                p -> p.owner() == this, PendingChanges::new);
+        if (pending == null) {
+            apply(Collections.singletonList(change));
+            return;
+        }
+        pending.changes.add(change);
+    }
+
+    private void apply(List<BiPredicate<Key, Entry>> changes) {
+        if (changes.stream().anyMatch(change -> change instanceof TeamNameChange)) {
+            teamNames.clear();
+        }
+        invalidated.increment(cache.invalidateIf((key, entry) -> changes.stream()
+                .anyMatch(change -> change.test(key, entry))));
+    }
+
+    // 이 트랜잭션에서 모은 변경 (REQUIRES_NEW 안쪽 트랜잭션은 따로 모아서 자기가 커밋될 때 반영)
+    private class PendingChanges implements TransactionSynchronization {
+        private final List<BiPredicate<Key, Entry>> changes = new ArrayList<>();
+
+        private MemberResultCache owner() {
+            return MemberResultCache.this;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+                apply(changes);
+            }
+        }
+    }
+
+    private static BiPredicate<Key, Entry> memberChanged(Long id, MemberRow before, MemberRow after) {
+        return (key, entry) -> entry.memberIds.contains(id)
+                || (before != null && before.matches(key.condition))
+                || (after != null && after.matches(key.condition));
+    }
+
+    private static TeamNameChange teamChanged(Long id, String before, String after) {
+        return (key, entry) -> entry.teamIds.contains(id)
+                || (key.condition.getTeamName() != null
+                && (key.condition.getTeamName().equals(before) || key.condition.getTeamName().equals(after)));
+    }
+
+    // 팀명이 바뀌었을 수 있는 변경 (반영할 때 teamNames 도 비움)
+    private interface TeamNameChange extends BiPredicate<Key, Entry> {
+    }
+
+    private class RowChangeListener implements EntityChangeListener {
+
+        @Override
+        public void onInsert(PostInsertEvent event) {
+            if (event.getEntity() instanceof Member) {
+                changed(memberChanged((Long) event.getId(), null, memberRow(event.getState(), event.getPersister())));
+            }
+            // 새 팀은 아직 소속 회원이 없으므로 결과가 안 바뀜 (회원이 들어오면 Member 변경으로 잡힘)
+        }
+
+        @Override
+        public void onUpdate(PostUpdateEvent event) {
+            if (event.getEntity() instanceof Member) {
+                changed(memberChanged((Long) event.getId(),
+                        memberRow(event.getOldState(), event.getPersister()),
+                        memberRow(event.getState(), event.getPersister())));
+            } else if (event.getEntity() instanceof Team) {
+                changed(teamChanged((Long) event.getId(),
+                        teamName(event.getOldState(), event.getPersister()),
+                        teamName(event.getState(), event.getPersister())));
+            }
+        }
+
+        @Override
+        public void onDelete(PostDeleteEvent event) {
+            if (event.getEntity() instanceof Member) {
+                changed(memberChanged((Long) event.getId(), memberRow(event.getDeletedState(), event.getPersister()), null));
+            } else if (event.getEntity() instanceof Team) {
+                changed(teamChanged((Long) event.getId(), teamName(event.getDeletedState(), event.getPersister()), null));
+            }
+        }
+    }
+
+    // 엔티티 저장이 아닌 member / team 변경 SQL = 벌크 연산
+    private class BulkStatementListener implements TableChangeListener {
+
+        @Override
+        public void onTableChanged(String table) {
+        }
+
+        @Override
+        public void onStatement(String table, String sql) {
+            if (("member".equals(table) || "team".equals(table)) && !entityNotifier.isEntityStatement(sql)) {
+                changed((TeamNameChange) (key, entry) -> true);
+            }
+        }
+    }
+
+    private MemberRow memberRow(Object[] state, EntityPersister persister) {
+        if (state == null) {
+            // 준영속 엔티티를 update 한 경우 등 예전 값을 모를 때는 모든 조건에 맞는 것으로 봄
+            return new MemberRow(null, 0, true, null) {
+                @Override
+                boolean matches(MemberSearchCondition condition) {
+                    return true;
+                }
+            };
+        }
+        EntityMetamodel metamodel = persister.getEntityMetamodel();
+        Object team = state[metamodel.getPropertyIndex("team")];
+        String teamName = null;
+        if (team instanceof HibernateProxy && !Hibernate.isInitialized(team)) {
+            teamName = teamNames.get((Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier());
+        } else if (team != null) {
+            teamName = ((Team) Hibernate.unproxy(team)).getName();
+        }
+        return new MemberRow(
+                (String) state[metamodel.getPropertyIndex("username")],
+                (Integer) state[metamodel.getPropertyIndex("age")],
+                team != null,
+                teamName);
+    }
+
+    private static String teamName(Object[] state, EntityPersister persister) {
+        return state == null ? null : (String) state[persister.getEntityMetamodel().getPropertyIndex("name")];
+    }
+
+    private static class Key {
+        private final String method;
+        private final MemberSearchCondition condition;
+        private final Pageable pageable;
+
+        private Key(String method, MemberSearchCondition condition, Pageable pageable) {
+            this.method = method;
+            this.condition = condition;
+            this.pageable = pageable;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return method.equals(key.method) && condition.equals(key.condition) && Objects.equals(pageable, key.pageable);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, condition, pageable);
+        }
+    }
+
+    private static class Entry {
+        private final Object result;
+        private final Set<Long> memberIds = new HashSet<>();
+        private final Map<Long, String> teamNames = new HashMap<>();
+        private final Set<Long> teamIds = teamNames.keySet();
+
+        private Entry(Object result, List<MemberTeamDto> rows) {
+            this.result = result;
+            for (MemberTeamDto row : rows) {
+                memberIds.add(row.getMemberId());
+                if (row.getTeamId() != null) {
+                    teamNames.put(row.getTeamId(), row.getTeamName());
+                }
+            }
+        }
+    }
+
+    // 이벤트의 state 배열에서 꺼낸 회원 한 행 (검색 조건에 맞는지 보는 용도)
+    private static class MemberRow {
+        private final String username;
+        private final int age;
+        private final boolean hasTeam;
+        // 팀명을 모르면 null
+        private final String teamName;
+
+        private MemberRow(String username, int age, boolean hasTeam, String teamName) {
+            this.username = username;
+            this.age = age;
+            this.hasTeam = hasTeam;
+            this.teamName = teamName;
+        }
+
+        // MemberSearchQueryTemplates 의 where 절과 같은 조건
+        boolean matches(MemberSearchCondition condition) {
+            if (condition.getUsername() != null && !condition.getUsername().equals(username)) {
+                return false;
+            }
+            if (condition.getTeamName() != null
+                    && (!hasTeam || (teamName != null && !condition.getTeamName().equals(teamName)))) {
+                return false;
+            }
+            if (condition.getAgeGoe() != null && age < condition.getAgeGoe()) {
+                return false;
+            }
+            return condition.getAgeLoe() == null || age <= condition.getAgeLoe();
+        }
+    }
+}
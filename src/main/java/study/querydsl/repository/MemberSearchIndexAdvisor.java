@@ -0,0 +1,158 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.Getter;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.QuerySplitter;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.hibernate.hql.spi.QueryTranslatorFactory;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+
+import javax.persistence.EntityManager;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static study.querydsl.entity.QMember.member;
+
+/*
+    16 가지 조건 모양마다 아래 SQL 을 H2 EXPLAIN 으로 실행해서 인덱스 없이 테이블 전체를 읽는 (tableScan) 테이블을 찾아 줌
+      - content / count           : MemberSearchQueryTemplates (search, searchPageComplex)
+      - pageSimple / pageSimpleCount : searchPageSimple (fetchResults 의 count 포함)
+      - slice                     : searchSlice (첫 페이지)
+      - stream                    : MemberJpaRepository.searchStream
+
+    JPQL -> SQL 은 하이버네이트 QueryTranslator 로 바꾸고, 파라미터는 아무 값이나 바인딩 (플랜만 봄)
+    조건이 없는 모양(none) 은 원래 전체를 읽는 쿼리라 fullScan 이어도 문제로 보지 않음 (isProblem)
+ */
+@Component
+public class MemberSearchIndexAdvisor {
+
+    // H2 EXPLAIN 결과에서 /* PUBLIC.MEMBER.tableScan */ 부분
+    private static final Pattern TABLE_SCAN = Pattern.compile("/\\* [\\w\"]+\\.([\\w\"]+)\\.tableScan");
+
+    private final MemberSearchQueryTemplates queryTemplates;
+
+    public MemberSearchIndexAdvisor(MemberSearchQueryTemplates queryTemplates) {
+        this.queryTemplates = queryTemplates;
+    }
+
+    public List<QueryPlan> explainAll(EntityManager em) {
+        List<QueryPlan> plans = new ArrayList<>();
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+        for (int shape = 0; shape < MemberSearchQueryTemplates.SHAPES; shape++) {
+            plans.add(explain(em, shape, "content", queryTemplates.contentJpql(shape)));
+            plans.add(explain(em, shape, "count", queryTemplates.countJpql(shape)));
+
+            JPAQuery<?> pageSimple = MemberRepositoryImpl.memberTeamQuery(queryFactory, conditionOf(shape));
+            plans.add(explain(em, shape, "pageSimple", jpql(pageSimple, false)));
+            plans.add(explain(em, shape, "pageSimpleCount", jpql(pageSimple, true)));
+            JPAQuery<?> slice = MemberRepositoryImpl.memberTeamQuery(queryFactory, conditionOf(shape))
+                    .orderBy(member.age.asc(), member.id.asc());
+            plans.add(explain(em, shape, "slice", jpql(slice, false)));
+            plans.add(explain(em, shape, "stream", jpql(MemberJpaRepository.streamQuery(queryFactory, conditionOf(shape)), false)));
+        }
+        return plans;
+    }
+
+    public List<QueryPlan> problems(EntityManager em) {
+        List<QueryPlan> problems = new ArrayList<>();
+        for (QueryPlan plan : explainAll(em)) {
+            if (plan.isProblem()) {
+                problems.add(plan);
+            }
+        }
+        return problems;
+    }
+
+    // 모양의 비트가 켜진 조건에만 값을 넣음 (값 자체는 플랜에 상관없음)
+    private static MemberSearchCondition conditionOf(int shape) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        if ((shape & MemberSearchQueryTemplates.USERNAME) != 0) condition.setUsername("x");
+        if ((shape & MemberSearchQueryTemplates.TEAM_NAME) != 0) condition.setTeamName("x");
+        if ((shape & MemberSearchQueryTemplates.AGE_GOE) != 0) condition.setAgeGoe(0);
+        if ((shape & MemberSearchQueryTemplates.AGE_LOE) != 0) condition.setAgeLoe(0);
+        return condition;
+    }
+
+    // fetchResults 처럼 count 는 같은 from / where 로 count(member) 를 만듦
+    private static String jpql(JPAQuery<?> query, boolean forCount) {
+        JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+        serializer.serialize(query.getMetadata(), forCount, null);
+        return serializer.toString();
+    }
+
+    private QueryPlan explain(EntityManager em, int shape, String kind, String jpql) {
+        Session session = em.unwrap(Session.class);
+        SessionFactoryImplementor factory = (SessionFactoryImplementor) session.getSessionFactory();
+        // 엔티티 이름을 클래스 이름으로 바꾼 뒤 번역 (쿼리 플랜 캐시가 하는 순서 그대로)
+        String hql = QuerySplitter.concreteQueries(jpql, factory)[0];
+        QueryTranslator translator = factory.getServiceRegistry().getService(QueryTranslatorFactory.class)
+                .createQueryTranslator(jpql, hql, Collections.emptyMap(), factory, null);
+        translator.compile(Collections.emptyMap(), false);
+        String sql = translator.getSQLString();
+
+        String plan = session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+                ParameterMetaData parameters = statement.getParameterMetaData();
+                for (int i = 1; i <= parameters.getParameterCount(); i++) {
+                    statement.setObject(i, parameters.getParameterType(i) == Types.INTEGER ? 0 : "x");
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    StringBuilder result = new StringBuilder();
+                    while (rs.next()) {
+                        result.append(rs.getString(1)).append('\n');
+                    }
+                    return result.toString();
+                }
+            }
+        });
+
+        Set<String> tableScans = new LinkedHashSet<>();
+        Matcher matcher = TABLE_SCAN.matcher(plan);
+        while (matcher.find()) {
+            tableScans.add(matcher.group(1).replace("\"", "").toLowerCase(Locale.ROOT));
+        }
+        return new QueryPlan(MemberSearchQueryTemplates.shapeName(shape), kind, sql, plan, tableScans);
+    }
+
+    @Getter
+    public static class QueryPlan {
+        private final String shape;
+        private final String kind;
+        private final String sql;
+        private final String plan;
+        private final Set<String> tableScans;
+
+        private QueryPlan(String shape, String kind, String sql, String plan, Set<String> tableScans) {
+            this.shape = shape;
+            this.kind = kind;
+            this.sql = sql;
+            this.plan = plan;
+            this.tableScans = tableScans;
+        }
+
+        public boolean isProblem() {
+            return !tableScans.isEmpty() && !"none".equals(shape);
+        }
+
+        @Override
+        public String toString() {
+            return kind + "[" + shape + "] full scan " + tableScans + "\n" + plan;
+        }
+    }
+}
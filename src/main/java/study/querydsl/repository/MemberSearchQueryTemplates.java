@@ -0,0 +1,206 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    MemberSearchCondition 은 조건이 4개라 where 절 모양은 2^4 = 16 가지 뿐
+    모양(null / non-null 비트마스크) 별로 JPQL 을 미리 만들어 두고 호출할 때는 파라미터만 바인딩함
+    -> 매번 BooleanExpression 트리 생성 + JPQL 직렬화를 안 해도 되고,
+       JPQL 문자열이 항상 같아서 하이버네이트 쿼리 플랜 캐시도 항상 맞음
+ */
+@Component
+public class MemberSearchQueryTemplates {
+
+    static final int USERNAME = 1;
+    static final int TEAM_NAME = 1 << 1;
+    static final int AGE_GOE = 1 << 2;
+    static final int AGE_LOE = 1 << 3;
+    static final int SHAPES = 1 << 4;
+
+    private static final Param<String> usernameParam = new Param<>(String.class, "username");
+    private static final Param<String> teamNameParam = new Param<>(String.class, "teamName");
+    private static final Param<Integer> ageGoeParam = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> ageLoeParam = new Param<>(Integer.class, "ageLoe");
+
+    private static final QMemberTeamDto projection = new QMemberTeamDto(
+            member.id, member.username, member.age, team.id, team.name);
+
+    private static final String[] shapeNames = new String[SHAPES];
+
+    static {
+        for (int shape = 0; shape < SHAPES; shape++) {
+            StringJoiner name = new StringJoiner(",");
+            if ((shape & USERNAME) != 0) name.add("username");
+            if ((shape & TEAM_NAME) != 0) name.add("teamName");
+            if ((shape & AGE_GOE) != 0) name.add("ageGoe");
+            if ((shape & AGE_LOE) != 0) name.add("ageLoe");
+            shapeNames[shape] = shape == 0 ? "none" : name.toString();
+        }
+    }
+
+    private final Template[] contentTemplates = new Template[SHAPES];
+    private final Template[] countTemplates = new Template[SHAPES];
+
+    public MemberSearchQueryTemplates() {
+        for (int shape = 0; shape < SHAPES; shape++) {
+            contentTemplates[shape] = template(contentQuery(shape).getMetadata(), false);
+            countTemplates[shape] = template(countQuery(shape).getMetadata(), true);
+        }
+    }
+
+    public static int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (hasText(condition.getUsername())) {
+            shape |= USERNAME;
+        }
+        if (hasText(condition.getTeamName())) {
+            shape |= TEAM_NAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= AGE_LOE;
+        }
+        return shape;
+    }
+
+    // 메트릭 태그용 이름 ex) "teamName,ageGoe", 조건이 없으면 "none"
+    public static String shapeName(int shape) {
+        return shapeNames[shape];
+    }
+
+    public List<MemberTeamDto> search(EntityManager em, MemberSearchCondition condition) {
+        return fetch(content(em, condition));
+    }
+
+    public List<MemberTeamDto> search(EntityManager em, MemberSearchCondition condition, long offset, int limit) {
+        Query query = content(em, condition);
+        query.setFirstResult((int) offset);
+        query.setMaxResults(limit);
+        return fetch(query);
+    }
+
+    public long count(EntityManager em, MemberSearchCondition condition) {
+        return ((Number) countTemplates[shapeOf(condition)].bind(em, condition).getSingleResult()).longValue();
+    }
+
+    public String contentJpql(int shape) {
+        return contentTemplates[shape].jpql;
+    }
+
+    public String countJpql(int shape) {
+        return countTemplates[shape].jpql;
+    }
+
+    private Query content(EntityManager em, MemberSearchCondition condition) {
+        return contentTemplates[shapeOf(condition)].bind(em, condition);
+    }
+
+    private static List<MemberTeamDto> fetch(Query query) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(projection.newInstance(row));
+        }
+        return result;
+    }
+
+    /*
+        팀 이름 조건이 있으면 팀이 없는 회원은 어차피 걸러지므로 left join 과 inner join 결과가 같음
+        inner join 이어야 DB 가 team(name 인덱스) 부터 읽고 member 를 team_id 인덱스로 찾아갈 수 있음
+        (left join 은 조인 순서를 못 바꿔서 member 전체를 읽게 됨)
+     */
+    private static JPAQuery<?> contentQuery(int shape) {
+        JPAQuery<?> query = new JPAQuery<Void>()
+                .select(projection)
+                .from(member);
+        if ((shape & TEAM_NAME) != 0) {
+            query.join(member.team, team);
+        } else {
+            query.leftJoin(member.team, team);
+        }
+        return query.where(where(shape));
+    }
+
+    // 팀 이름 조건이 없으면 member -> team (to-one) left join 은 건수에 영향이 없어서 뺌
+    private static JPAQuery<?> countQuery(int shape) {
+        JPAQuery<?> query = new JPAQuery<Void>()
+                .select(member)
+                .from(member);
+        if ((shape & TEAM_NAME) != 0) {
+            query.join(member.team, team);
+        }
+        return query.where(where(shape));
+    }
+
+    private static BooleanExpression[] where(int shape) {
+        return new BooleanExpression[]{
+                (shape & USERNAME) != 0 ? member.username.eq(usernameParam) : null,
+                (shape & TEAM_NAME) != 0 ? team.name.eq(teamNameParam) : null,
+                (shape & AGE_GOE) != 0 ? member.age.goe(ageGoeParam) : null,
+                (shape & AGE_LOE) != 0 ? member.age.loe(ageLoeParam) : null
+        };
+    }
+
+    private static Template template(QueryMetadata metadata, boolean forCount) {
+        JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+        serializer.serialize(metadata, forCount, null);
+        return new Template(serializer.toString(), serializer.getConstants().toArray());
+    }
+
+    private static class Template {
+        private final String jpql;
+        // ?1, ?2 ... 순서대로 들어갈 Param
+        private final Object[] params;
+
+        private Template(String jpql, Object[] params) {
+            this.jpql = jpql;
+            this.params = params;
+        }
+
+        private Query bind(EntityManager em, MemberSearchCondition condition) {
+            Query query = em.createQuery(jpql);
+            for (int i = 0; i < params.length; i++) {
+                query.setParameter(i + 1, valueOf(params[i], condition));
+            }
+            return query;
+        }
+
+        private static Object valueOf(Object param, MemberSearchCondition condition) {
+            if (param == usernameParam) {
+                return condition.getUsername();
+            }
+            if (param == teamNameParam) {
+                return condition.getTeamName();
+            }
+            if (param == ageGoeParam) {
+                return condition.getAgeGoe();
+            }
+            if (param == ageLoeParam) {
+                return condition.getAgeLoe();
+            }
+            return param;
+        }
+    }
+}
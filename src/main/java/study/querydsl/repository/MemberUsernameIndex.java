@@ -0,0 +1,227 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSuggestionDto;
+import study.querydsl.entity.Member;
+import study.querydsl.support.EntityChangeListener;
+import study.querydsl.support.EntityChangeNotifier;
+import study.querydsl.support.SnapshotMaintainer;
+import study.querydsl.support.TableChangeNotifier;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+
+/*
+    username 접두사 자동완성용 메모리 인덱스 (DB 안 감)
+    (소문자 username, id) 순으로 정렬된 skip list 라 접두사 범위는 시작 위치 찾기(log n) 로 바로 찾음
+    그 범위를 훑으면서 나이 많은 순 상위 limit 명만 힙에 남김 (접두사 범위 m 건이면 m log limit)
+      접두사마다 상위 k 를 미리 들고 있으면 조회는 더 빠르지만 수정 / 삭제 때 모든 접두사를 다시 골라야 해서 안 함
+
+    - 시작할 때 (ApplicationReadyEvent) member 전체를 스트리밍으로 읽어서 만듦
+    - 이후 Member 저장 / 수정 / 삭제는 커밋된 뒤에 한 건씩 반영
+    - 벌크 연산은 어떤 행이 바뀌었는지 모르므로 커밋 후 백그라운드에서 다시 만듦 (SnapshotMaintainer)
+    - 인덱스는 동시 자료구조라 읽을 때 락 안 잡음
+    대소문자 구분 없이 비교, 결과는 나이 많은 순 (같으면 username 순)
+ */
+@Component
+public class MemberUsernameIndex implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MemberUsernameIndex.class);
+
+    private static final int LOAD_FETCH_SIZE = 1000;
+
+    // 나이 많은 순, 같으면 키 (username, id) 순
+    private static final Comparator<Map.Entry<Key, MemberSuggestionDto>> RANK =
+            Comparator.<Map.Entry<Key, MemberSuggestionDto>>comparingInt(entry -> -entry.getValue().getAge())
+                    .thenComparing(Map.Entry::getKey);
+
+    private final EntityManager em;
+    private final TransactionTemplate loadTx;
+    private final boolean enabled;
+    private final SnapshotMaintainer<Index> index;
+
+    public MemberUsernameIndex(EntityManager em, PlatformTransactionManager transactionManager,
+                               EntityChangeNotifier entityNotifier, TableChangeNotifier tableNotifier,
+                               MeterRegistry meterRegistry,
+                               @Value("${member.autocomplete.enabled:true}") boolean enabled) {
+        this.em = em;
+        this.loadTx = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.index = new SnapshotMaintainer<>("member-username-index", new Index(), this::load);
+        Gauge.builder("member.autocomplete.size", this, MemberUsernameIndex::size).register(meterRegistry);
+
+        if (enabled) {
+            index.listen(entityNotifier, tableNotifier, new MemberChangeListener(), "member");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    // prefix 로 시작하는 회원 중 나이 많은 순 limit 명
+    public List<MemberSuggestionDto> suggest(String prefix, int limit) {
+        String from = normalize(prefix);
+        // 맨 위가 지금까지 고른 것 중 순위가 제일 낮은 것
+        PriorityQueue<Map.Entry<Key, MemberSuggestionDto>> top = new PriorityQueue<>(RANK.reversed());
+        for (Map.Entry<Key, MemberSuggestionDto> entry : index.current().byName.tailMap(new Key(from, Long.MIN_VALUE)).entrySet()) {
+            if (!entry.getKey().username.startsWith(from)) {
+                break;
+            }
+            if (top.size() < limit) {
+                top.add(entry);
+            } else if (RANK.compare(entry, top.peek()) < 0) {
+                top.poll();
+                top.add(entry);
+            }
+        }
+        List<MemberSuggestionDto> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().getValue());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    public int size() {
+        return index.current().ids.size();
+    }
+
+    // 시작할 때 / 벌크 연산 후에 한 번에 하나씩만 돎
+    public void rebuild() {
+        index.rebuild();
+    }
+
+    private Index load() {
+        Index fresh = new Index();
+        long start = System.nanoTime();
+        loadTx.executeWithoutResult(status -> {
+            try (Stream<Tuple> rows = new JPAQueryFactory(em)
+                    .select(member.id, member.username, member.age)
+                    .from(member)
+                    .setHint(QueryHints.HINT_FETCH_SIZE, LOAD_FETCH_SIZE)
+                    .stream()) {
+                rows.forEach(row -> fresh.put(row.get(member.id),
+                        new MemberSuggestionDto(row.get(member.id), row.get(member.username), row.get(member.age))));
+            }
+        });
+        log.info("member username index built: {} members in {} ms", fresh.ids.size(), (System.nanoTime() - start) / 1_000_000);
+        return fresh;
+    }
+
+    private static String normalize(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void destroy() {
+        index.shutdown();
+    }
+
+    private class MemberChangeListener implements EntityChangeListener {
+
+        @Override
+        public void onInsert(PostInsertEvent event) {
+            if (event.getEntity() instanceof Member) {
+                MemberSuggestionDto row = row((Long) event.getId(), event.getState(), event.getPersister().getEntityMetamodel());
+                index.applyAfterCommit(i -> i.put(row.getMemberId(), row));
+            }
+        }
+
+        @Override
+        public void onUpdate(PostUpdateEvent event) {
+            if (event.getEntity() instanceof Member) {
+                MemberSuggestionDto row = row((Long) event.getId(), event.getState(), event.getPersister().getEntityMetamodel());
+                index.applyAfterCommit(i -> i.put(row.getMemberId(), row));
+            }
+        }
+
+        @Override
+        public void onDelete(PostDeleteEvent event) {
+            if (event.getEntity() instanceof Member) {
+                Long id = (Long) event.getId();
+                index.applyAfterCommit(i -> i.put(id, null));
+            }
+        }
+
+        private MemberSuggestionDto row(Long id, Object[] state, EntityMetamodel metamodel) {
+            return new MemberSuggestionDto(id,
+                    (String) state[metamodel.getPropertyIndex("username")],
+                    (Integer) state[metamodel.getPropertyIndex("age")]);
+        }
+    }
+
+    private static class Key implements Comparable<Key> {
+        private final String username;
+        private final long id;
+
+        private Key(String username, long id) {
+            this.username = username;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            int c = username.compareTo(o.username);
+            return c != 0 ? c : Long.compare(id, o.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && compareTo((Key) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return username.hashCode() * 31 + Long.hashCode(id);
+        }
+    }
+
+    private static class Index {
+        private final ConcurrentSkipListMap<Key, MemberSuggestionDto> byName = new ConcurrentSkipListMap<>();
+        private final Map<Long, Key> ids = new ConcurrentHashMap<>();
+
+        // row 가 null 이면 삭제, username 이 바뀌면 예전 키는 지움
+        private void put(Long id, MemberSuggestionDto row) {
+            Key key = row != null && row.getUsername() != null ? new Key(normalize(row.getUsername()), id) : null;
+            Key old = key != null ? ids.put(id, key) : ids.remove(id);
+            if (key != null) {
+                byName.put(key, row);
+            }
+            if (old != null && !old.equals(key)) {
+                byName.remove(old);
+            }
+        }
+    }
+}
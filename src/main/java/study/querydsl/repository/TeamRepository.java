@@ -0,0 +1,20 @@
+package study.querydsl.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import study.querydsl.entity.Team;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+
+public interface TeamRepository extends JpaRepository<Team, Long> {
+
+    String TEAM_BY_NAME_REGION = "team-by-name";
+
+    // 쿼리 캐시 - team 테이블에 변경이 생기면 하이버네이트가 자동으로 무효화
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHE_REGION, value = TEAM_BY_NAME_REGION)
+    })
+    List<Team> findByName(String name);
+}
@@ -0,0 +1,445 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.QTeamStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.EntityChangeListener;
+import study.querydsl.support.EntityChangeNotifier;
+import study.querydsl.support.TableChangeListener;
+import study.querydsl.support.TableChangeNotifier;
+import study.querydsl.support.TableChangeStatementInspector;
+import study.querydsl.support.TransactionSynchronizations;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStats.teamStats;
+
+/*
+    팀별 회원 수 / 나이 합계 / 최소 / 최대 요약 테이블 (team_stats) 관리
+    QuerydslBasicTest.group 같은 group by 를 매번 하지 않고 팀 수 만큼만 읽음 (findAll)
+
+    같은 트랜잭션 안에서 반영 (커밋되면 요약도 같이 커밋, 롤백되면 같이 롤백)
+      - Member 저장 / 팀 변경 / 나이 변경 / 삭제, Team 저장 / 삭제 이벤트에서 팀별 변화량만 모아 둠
+      - 하이버네이트가 커밋 직전 flush 를 끝낸 뒤 (BeforeTransactionCompletionProcess) 팀별 update 한 번씩
+        회원 수 / 합계는 더하고 빼기, 최소 / 최대는 늘어나는 쪽만 바로 반영하고
+        빠진 회원이 있으면 그 팀만 다시 계산 (idx_member_team_id)
+      - member / team 벌크 연산은 어떤 행이 바뀌었는지 모르므로 전체를 다시 계산
+        update 의 set 절에 age / team_id 가 없으면 (ex. username 만 변경) 요약이 안 바뀌므로 건너뜀
+        MemberBulkRepository 청크처럼 건드린 팀을 알려 주면 (bulkTouched) 그 팀만 다시 계산
+      - 스프링 트랜잭션 밖에서의 변경은 반영 안 됨 -> 아래 검증에서 잡힘
+
+    verify : 전체를 다시 계산해서 요약과 다른 팀 id 목록 (repair 면 그 팀만 고침)
+             요약과 다시 계산한 값은 한 구문에서 비교함 (그 사이 커밋이 불일치로 잡히지 않게)
+             verify-interval-ms 마다 돌고 (0 이면 안 돎), 시작할 때는 전체를 다시 계산함
+ */
+@Component
+public class TeamStatsSummary implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TeamStatsSummary.class);
+
+    private final EntityManager em;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readTx;
+    private final EntityChangeNotifier entityNotifier;
+    private final boolean repair;
+    private final Counter mismatches;
+    private final ScheduledExecutorService verifier;
+
+    public TeamStatsSummary(EntityManager em, PlatformTransactionManager transactionManager,
+                            EntityChangeNotifier entityNotifier, TableChangeNotifier tableNotifier,
+                            MeterRegistry meterRegistry,
+                            @Value("${team-stats.verify-interval-ms:300000}") long verifyIntervalMs,
+                            @Value("${team-stats.repair:true}") boolean repair) {
+        this.em = em;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.readTx = new TransactionTemplate(transactionManager);
+        this.readTx.setReadOnly(true);
+        this.entityNotifier = entityNotifier;
+        this.repair = repair;
+        this.mismatches = Counter.builder("team.stats.mismatch").register(meterRegistry);
+
+        entityNotifier.addListener(new RowChangeListener());
+        tableNotifier.addListener(new BulkStatementListener());
+
+        if (verifyIntervalMs > 0) {
+            verifier = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("team-stats-verify-"));
+            verifier.scheduleWithFixedDelay(this::verifyQuietly, verifyIntervalMs, verifyIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            verifier = null;
+        }
+    }
+
+    // 테이블이 새로 만들어졌거나 (ddl create) 꺼져 있던 동안 바뀐 것 맞추기
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        tx.executeWithoutResult(status -> em.unwrap(SessionImplementor.class).doWork(TeamStatsSummary::recomputeAll));
+    }
+
+    // 팀명 순 (팀명이 같으면 팀 id 순)
+    public List<TeamStatsDto> findAll() {
+        return readTx.execute(status -> new JPAQueryFactory(em)
+                .select(new QTeamStatsDto(team.id, team.name, teamStats.memberCount, teamStats.ageSum,
+                        teamStats.minAge, teamStats.maxAge))
+                .from(teamStats)
+                .join(team).on(team.id.eq(teamStats.teamId))
+                .orderBy(team.name.asc(), team.id.asc())
+                .fetch());
+    }
+
+    public List<Long> verify() {
+        List<Long> mismatched = tx.execute(status ->
+                em.unwrap(SessionImplementor.class).doReturningWork(TeamStatsSummary::mismatchedTeams));
+
+        if (!mismatched.isEmpty()) {
+            mismatches.increment(mismatched.size());
+            log.warn("team stats mismatch: teams {}{}", mismatched, repair ? " (repaired)" : "");
+            if (repair) {
+                tx.executeWithoutResult(status -> em.unwrap(SessionImplementor.class).doWork(connection -> {
+                    for (Long teamId : mismatched) {
+                        recompute(connection, teamId);
+                    }
+                }));
+            }
+        }
+        return mismatched;
+    }
+
+    /*
+        같은 트랜잭션에서 방금 실행한 member 벌크 구문 하나가 teamIds 팀의 회원만 건드렸음 (null 은 팀 없음)
+        트랜잭션의 벌크 구문이 모두 이렇게 알려진 경우에만 전체 대신 그 팀만 다시 계산
+     */
+    public void bulkTouched(Collection<Long> teamIds) {
+        Pending pending = pending(em.unwrap(SessionImplementor.class));
+        if (pending != null) {
+            pending.touchedBulkStatements++;
+            for (Long teamId : teamIds) {
+                if (teamId != null) {
+                    pending.bulkTeams.add(teamId);
+                }
+            }
+        }
+    }
+
+    private void verifyQuietly() {
+        try {
+            verify();
+        } catch (RuntimeException e) {
+            log.warn("team stats verify failed", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (verifier != null) {
+            verifier.shutdownNow();
+        }
+    }
+
+    // 이 트랜잭션에서 모은 변화량 (REQUIRES_NEW 안쪽 트랜잭션은 따로 모아서 자기가 커밋될 때 반영)
+    private Pending pending(SessionImplementor session) {
+        return TransactionSynchronizations.getOrRegister(Pending.class, p -> p.owner() == this, () -> {
+            Pending created = new Pending();
+            // 커밋할 때 flush 가 끝난 뒤에 실행됨 (flush 중에 모인 변화량도 포함)
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) s -> s.doWork(created::apply));
+            return created;
+        });
+    }
+
+    private class RowChangeListener implements EntityChangeListener {
+
+        @Override
+        public void onInsert(PostInsertEvent event) {
+            if (event.getEntity() instanceof Member) {
+                Pending pending = pending(event.getSession());
+                if (pending != null) {
+                    pending.add(memberTeam(event.getState(), event.getPersister().getEntityMetamodel()),
+                            memberAge(event.getState(), event.getPersister().getEntityMetamodel()));
+                }
+            } else if (event.getEntity() instanceof Team) {
+                Pending pending = pending(event.getSession());
+                if (pending != null) {
+                    pending.createdTeams.add((Long) event.getId());
+                }
+            }
+        }
+
+        @Override
+        public void onUpdate(PostUpdateEvent event) {
+            if (!(event.getEntity() instanceof Member)) {
+                return;
+            }
+            Pending pending = pending(event.getSession());
+            if (pending == null) {
+                return;
+            }
+            EntityMetamodel metamodel = event.getPersister().getEntityMetamodel();
+            if (event.getOldState() == null) {
+                // 준영속 엔티티를 update 한 경우 등 예전 값을 모르면 전체를 다시 계산
+                pending.recomputeAll = true;
+                return;
+            }
+            Long oldTeam = memberTeam(event.getOldState(), metamodel);
+            Long newTeam = memberTeam(event.getState(), metamodel);
+            int oldAge = memberAge(event.getOldState(), metamodel);
+            int newAge = memberAge(event.getState(), metamodel);
+            if (!Objects.equals(oldTeam, newTeam) || oldAge != newAge) {
+                pending.remove(oldTeam, oldAge);
+                pending.add(newTeam, newAge);
+            }
+        }
+
+        @Override
+        public void onDelete(PostDeleteEvent event) {
+            if (event.getEntity() instanceof Member) {
+                Pending pending = pending(event.getSession());
+                if (pending != null) {
+                    EntityMetamodel metamodel = event.getPersister().getEntityMetamodel();
+                    pending.remove(memberTeam(event.getDeletedState(), metamodel), memberAge(event.getDeletedState(), metamodel));
+                }
+            } else if (event.getEntity() instanceof Team) {
+                Pending pending = pending(event.getSession());
+                if (pending != null) {
+                    pending.deletedTeams.add((Long) event.getId());
+                }
+            }
+        }
+
+        private Long memberTeam(Object[] state, EntityMetamodel metamodel) {
+            Object team = state[metamodel.getPropertyIndex("team")];
+            if (team instanceof HibernateProxy) {
+                return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+            }
+            return team != null ? ((Team) team).getId() : null;
+        }
+
+        private int memberAge(Object[] state, EntityMetamodel metamodel) {
+            return (Integer) state[metamodel.getPropertyIndex("age")];
+        }
+    }
+
+    private class BulkStatementListener implements TableChangeListener {
+
+        @Override
+        public void onTableChanged(String table) {
+        }
+
+        @Override
+        public void onStatement(String table, String sql) {
+            if (("member".equals(table) || "team".equals(table))
+                    && !entityNotifier.isEntityStatement(sql)
+                    && affectsStats(sql)
+                    && TransactionSynchronizationManager.isActualTransactionActive()) {
+                Pending pending = pending(em.unwrap(SessionImplementor.class));
+                if (pending == null) {
+                    return;
+                }
+                if ("member".equals(table)) {
+                    pending.bulkStatements++;
+                } else {
+                    pending.recomputeAll = true;
+                }
+            }
+        }
+
+        // update 는 set 절에 age / team_id 가 있을 때만, insert / delete 는 항상
+        private boolean affectsStats(String sql) {
+            String lower = TableChangeStatementInspector.stripComments(sql).toLowerCase(Locale.ROOT);
+            if (!lower.startsWith("update ")) {
+                return true;
+            }
+            int set = lower.indexOf(" set ");
+            int where = lower.indexOf(" where ", set);
+            String assignments = set < 0 ? lower : lower.substring(set, where < 0 ? lower.length() : where);
+            return assignments.contains("age") || assignments.contains("team_id");
+        }
+    }
+
+    private class Pending implements TransactionSynchronization {
+        private boolean recomputeAll;
+        // member 벌크 구문 수 / 그중 건드린 팀을 알려 준 수
+        private int bulkStatements;
+        private int touchedBulkStatements;
+        private final Set<Long> bulkTeams = new LinkedHashSet<>();
+        private final Set<Long> createdTeams = new LinkedHashSet<>();
+        private final Set<Long> deletedTeams = new LinkedHashSet<>();
+        private final Map<Long, Delta> deltas = new LinkedHashMap<>();
+
+        private TeamStatsSummary owner() {
+            return TeamStatsSummary.this;
+        }
+
+        private void add(Long teamId, int age) {
+            if (teamId != null) {
+                deltas.computeIfAbsent(teamId, id -> new Delta()).add(age);
+            }
+        }
+
+        private void remove(Long teamId, int age) {
+            if (teamId != null) {
+                deltas.computeIfAbsent(teamId, id -> new Delta()).remove(age);
+            }
+        }
+
+        private void apply(Connection connection) throws SQLException {
+            if (recomputeAll || bulkStatements > touchedBulkStatements) {
+                recomputeAll(connection);
+                return;
+            }
+            if (bulkStatements > 0) {
+                // 벌크 구문이 건드린 팀은 빠진 회원이 있는 것처럼 다시 계산
+                for (Long teamId : bulkTeams) {
+                    deltas.computeIfAbsent(teamId, id -> new Delta()).removed = true;
+                }
+            }
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "insert into team_stats (team_id, member_count, age_sum, min_age, max_age) values (?, 0, 0, null, null)")) {
+                for (Long teamId : createdTeams) {
+                    insert.setLong(1, teamId);
+                    insert.executeUpdate();
+                }
+            }
+            try (PreparedStatement update = connection.prepareStatement(
+                    "update team_stats set member_count = member_count + ?, age_sum = age_sum + ?,"
+                            + " min_age = least(coalesce(min_age, ?), ?), max_age = greatest(coalesce(max_age, ?), ?)"
+                            + " where team_id = ?")) {
+                for (Map.Entry<Long, Delta> entry : deltas.entrySet()) {
+                    Delta delta = entry.getValue();
+                    if (delta.removed) {
+                        // 최소 / 최대였던 회원이 빠졌을 수 있으므로 그 팀만 다시 계산
+                        recompute(connection, entry.getKey());
+                        continue;
+                    }
+                    update.setLong(1, delta.count);
+                    update.setLong(2, delta.sum);
+                    update.setInt(3, delta.min);
+                    update.setInt(4, delta.min);
+                    update.setInt(5, delta.max);
+                    update.setInt(6, delta.max);
+                    update.setLong(7, entry.getKey());
+                    if (update.executeUpdate() == 0) {
+                        // 요약 행이 없는 팀 (꺼져 있던 동안 생긴 팀 등)
+                        recompute(connection, entry.getKey());
+                    }
+                }
+            }
+            try (PreparedStatement delete = connection.prepareStatement("delete from team_stats where team_id = ?")) {
+                for (Long teamId : deletedTeams) {
+                    delete.setLong(1, teamId);
+                    delete.executeUpdate();
+                }
+            }
+        }
+    }
+
+    // 한 팀에서 늘어난 / 줄어든 회원 수와 나이 (빠진 회원이 없으면 늘어난 회원은 항상 있음)
+    private static class Delta {
+        private long count;
+        private long sum;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        private boolean removed;
+
+        private void add(int age) {
+            count++;
+            sum += age;
+            min = Math.min(min, age);
+            max = Math.max(max, age);
+        }
+
+        private void remove(int age) {
+            count--;
+            sum -= age;
+            removed = true;
+        }
+    }
+
+    /*
+        요약과 다시 계산한 값을 한 구문에서 비교 (구문 하나는 같은 시점의 커밋된 데이터를 봄)
+        따로 읽으면 그 사이에 들어온 커밋이 불일치로 보임
+     */
+    private static List<Long> mismatchedTeams(Connection connection) throws SQLException {
+        List<Long> result = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "select e.team_id from ("
+                             + " select t.id team_id, count(m.member_id) member_count, coalesce(sum(m.age), 0) age_sum,"
+                             + " min(m.age) min_age, max(m.age) max_age"
+                             + " from team t left join member m on m.team_id = t.id group by t.id) e"
+                             + " left join team_stats s on s.team_id = e.team_id"
+                             + " where s.team_id is null or s.member_count <> e.member_count or s.age_sum <> e.age_sum"
+                             + " or s.min_age is distinct from e.min_age or s.max_age is distinct from e.max_age"
+                             // 없어진 팀의 요약
+                             + " union all select s.team_id from team_stats s"
+                             + " where not exists (select 1 from team t where t.id = s.team_id)")) {
+            while (rs.next()) {
+                result.add(rs.getLong(1));
+            }
+        }
+        return result;
+    }
+
+    private static void recompute(Connection connection, long teamId) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("delete from team_stats where team_id = ?");
+             PreparedStatement insert = connection.prepareStatement(
+                     "insert into team_stats (team_id, member_count, age_sum, min_age, max_age)"
+                             + " select t.id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)"
+                             + " from team t left join member m on m.team_id = t.id"
+                             + " where t.id = ? group by t.id")) {
+            delete.setLong(1, teamId);
+            delete.executeUpdate();
+            insert.setLong(1, teamId);
+            insert.executeUpdate();
+        }
+    }
+
+    private static void recomputeAll(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("delete from team_stats");
+            statement.executeUpdate("insert into team_stats (team_id, member_count, age_sum, min_age, max_age)"
+                    + " select t.id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)"
+                    + " from team t left join member m on m.team_id = t.id"
+                    + " group by t.id");
+        }
+    }
+}
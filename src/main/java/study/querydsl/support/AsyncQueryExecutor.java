@@ -0,0 +1,162 @@
+package study.querydsl.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    컨트롤러가 CompletableFuture 를 돌려줄 때 리포지토리 호출을 돌리는 전용 실행기 (MemberAsyncController)
+    요청 스레드(톰캣)는 바로 반납되고 느린 JDBC 호출은 여기서 기다림
+
+    mode
+      - virtual  : 작업마다 가상 스레드 (Java 21 이상)
+      - platform : max-concurrency 개짜리 스레드 풀
+      - auto     : 가상 스레드를 쓸 수 있으면 virtual, 아니면 platform (11 / 17)
+    어느 쪽이든 동시에 실행하는 작업은 max-concurrency, 기다리는 작업은 queue-size 까지
+    넘치면 RejectedExecutionException 으로 실패한 future 를 돌려줌 (컨트롤러에서 503)
+    가상 스레드도 커넥션 풀보다 많이 돌려 봐야 커넥션을 기다릴 뿐이므로 같이 제한함
+ */
+@Component
+public class AsyncQueryExecutor implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncQueryExecutor.class);
+
+    public enum Mode { AUTO, VIRTUAL, PLATFORM }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    // virtual 일 때만 씀 (platform 은 풀 크기 / 대기열이 제한)
+    private final Semaphore admitted;
+    private final Semaphore running;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+
+    public AsyncQueryExecutor(MeterRegistry meterRegistry,
+                              @Value("${async-query.mode:auto}") Mode mode,
+                              @Value("${async-query.max-concurrency:8}") int maxConcurrency,
+                              @Value("${async-query.queue-size:200}") int queueSize) {
+        ExecutorService virtual = mode != Mode.PLATFORM ? newVirtualThreadExecutor() : null;
+        if (mode == Mode.VIRTUAL && virtual == null) {
+            log.warn("가상 스레드를 쓸 수 없는 런타임 (Java {}), platform 모드로 실행", Runtime.version().feature());
+        }
+        if (virtual != null) {
+            this.mode = Mode.VIRTUAL;
+            this.executor = virtual;
+            this.admitted = new Semaphore(maxConcurrency + queueSize);
+            this.running = new Semaphore(maxConcurrency);
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize), new CustomizableThreadFactory("async-query-"));
+            pool.allowCoreThreadTimeOut(true);
+            this.mode = Mode.PLATFORM;
+            this.executor = pool;
+            this.admitted = null;
+            this.running = null;
+        }
+        log.info("async-query 실행 모드: {} (동시 실행 {}, 대기 {})", this.mode, maxConcurrency, queueSize);
+
+        this.rejected = Counter.builder("async-query.rejected").register(meterRegistry);
+        Gauge.builder("async-query.in-flight", inFlight, AtomicInteger::get)
+                .tag("mode", this.mode.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    // 실제로 쓰는 모드 (VIRTUAL 또는 PLATFORM)
+    public Mode mode() {
+        return mode;
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (admitted != null && !admitted.tryAcquire()) {
+            return reject(future);
+        }
+        Callable<T> propagated = SqlCallerContext.propagate(task);
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> run(propagated, future));
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            release();
+            return reject(future);
+        }
+        return future;
+    }
+
+    private <T> void run(Callable<T> task, CompletableFuture<T> future) {
+        try {
+            if (running != null) {
+                running.acquire();
+            }
+            try {
+                future.complete(task.call());
+            } finally {
+                if (running != null) {
+                    running.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.decrementAndGet();
+            release();
+        }
+    }
+
+    private void release() {
+        if (admitted != null) {
+            admitted.release();
+        }
+    }
+
+    private <T> CompletableFuture<T> reject(CompletableFuture<T> future) {
+        rejected.increment();
+        future.completeExceptionally(new RejectedExecutionException("async-query 대기열이 꽉 찼습니다."));
+        return future;
+    }
+
+    /*
+        소스 호환은 11 이라 Java 21 API 는 리플렉션으로 호출
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("async-query-v-", 0).factory())
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, "async-query-v-", 0L);
+            ThreadFactory factory = (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("가상 스레드 실행기를 만들 수 없음", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.support;
+
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+
+/*
+    엔티티 단위 변경 (persist / dirty checking / remove) 이 flush 될 때 불림, 아직 커밋 전
+    벌크 연산(JPQL update/delete) 은 여기로 오지 않음 -> TableChangeListener.onStatement 참고
+ */
+public interface EntityChangeListener {
+
+    default void onInsert(PostInsertEvent event) {
+    }
+
+    default void onUpdate(PostUpdateEvent event) {
+    }
+
+    default void onDelete(PostDeleteEvent event) {
+    }
+}
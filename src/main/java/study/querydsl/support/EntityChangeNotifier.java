@@ -0,0 +1,133 @@
+package study.querydsl.support;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+    하이버네이트 엔티티 이벤트(post insert / update / delete) 를 리스너들에게 넘겨줌
+    Integrator 로 등록됨 (JpaSupportConfig)
+
+    isEntityStatement : 엔티티 persister 가 만든 insert / update / delete SQL 인지
+      StatementInspector 는 SQL 만 보기 때문에 엔티티 저장인지 벌크 연산인지 구분할 때 씀
+      (벌크 연산은 어떤 행이 바뀌었는지 알 수 없어서 테이블 단위로 처리해야 함)
+      @DynamicUpdate 처럼 SQL 을 그때그때 만드는 엔티티는 벌크 연산으로 보임
+ */
+@Component
+public class EntityChangeNotifier implements Integrator,
+        PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final List<EntityChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile SessionFactoryImplementor sessionFactory;
+    private volatile Set<String> entityStatements;
+
+    public void addListener(EntityChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public boolean isEntityStatement(String sql) {
+        Set<String> statements = entityStatements;
+        if (statements == null) {
+            if (sessionFactory == null) {
+                return false;
+            }
+            statements = entityStatements = collectEntityStatements(sessionFactory);
+        }
+        return statements.contains(sql);
+    }
+
+    // persister 는 세션 팩토리가 다 만들어진 뒤에 생기므로 처음 물어볼 때 모음
+    private static Set<String> collectEntityStatements(SessionFactoryImplementor sessionFactory) {
+        Set<String> statements = new HashSet<>();
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            if (persister instanceof AbstractEntityPersister) {
+                AbstractEntityPersister entityPersister = (AbstractEntityPersister) persister;
+                addAll(statements, entityPersister.getSQLInsertStrings());
+                addAll(statements, entityPersister.getSQLUpdateStrings());
+                addAll(statements, entityPersister.getSQLLazyUpdateStrings());
+                addAll(statements, entityPersister.getSQLDeleteStrings());
+                addAll(statements, entityPersister.getSQLIdentityInsertString());
+            }
+        }
+        return Collections.unmodifiableSet(statements);
+    }
+
+    private static void addAll(Set<String> statements, String... sqls) {
+        if (sqls == null) {
+            return;
+        }
+        for (String sql : sqls) {
+            if (sql != null) {
+                statements.add(sql);
+            }
+        }
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        this.sessionFactory = sessionFactory;
+        this.entityStatements = null;
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        this.sessionFactory = null;
+        this.entityStatements = null;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        for (EntityChangeListener listener : listeners) {
+            listener.onInsert(event);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        for (EntityChangeListener listener : listeners) {
+            listener.onUpdate(event);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        for (EntityChangeListener listener : listeners) {
+            listener.onDelete(event);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    // 5.6 에서는 아직 추상 메서드라 구현은 해야 함 (이름 오타로 deprecated, 6 에서 빠짐)
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+}
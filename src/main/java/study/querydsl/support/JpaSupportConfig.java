@@ -0,0 +1,25 @@
+package study.querydsl.support;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+
+@Configuration
+public class JpaSupportConfig {
+
+    @Bean
+    HibernatePropertiesCustomizer tableChangeInspectorCustomizer(TableChangeNotifier notifier) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new TableChangeStatementInspector(notifier));
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer entityChangeIntegratorCustomizer(EntityChangeNotifier notifier) {
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> Collections.singletonList(notifier));
+    }
+}
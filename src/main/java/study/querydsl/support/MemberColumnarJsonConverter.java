@@ -0,0 +1,233 @@
+package study.querydsl.support;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Accept: application/vnd.querydsl.columnar+json 이면 MemberTeamDto 목록 / 페이지를 컬럼 단위로 내려줌
+    행마다 키 이름을 반복하지 않고, 팀(teamId, teamName)은 teams 사전에 한 번만 쓰고 행에는 사전 번호만 씀
+      {
+        "rows": 3,
+        "memberId": [1, 2, 3],
+        "username": ["member1", "member2", "member3"],
+        "age": [10, 20, 30],
+        "team": [0, 0, null],                                  -- teams 번호, 팀이 없으면 null
+        "teams": {"teamId": [1], "teamName": ["teamA"]},
+        "page": {"number": 0, "size": 20, "totalElements": 3, "totalPages": 1}   -- Page 일 때만
+      }
+    Map 같은 중간 객체 없이 JsonGenerator 로 바로 씀
+    읽기도 됨 (RestTemplate 등 클라이언트에서 같은 형식을 List / Page 로 받을 때)
+
+    응답 가능한 타입 목록에는 스스로 들어가지 않음 (canWrite(.., null) 이 false)
+    -> 이 형식을 내줄 엔드포인트는 매핑에 produces = {application/json, 이 타입} 을 직접 적음 (순서대로 json 이 기본)
+ */
+public class MemberColumnarJsonConverter implements GenericHttpMessageConverter<Object> {
+
+    public static final String COLUMNAR_JSON_VALUE = "application/vnd.querydsl.columnar+json";
+    public static final MediaType COLUMNAR_JSON = MediaType.parseMediaType(COLUMNAR_JSON_VALUE);
+
+    private final ObjectMapper objectMapper;
+
+    public MemberColumnarJsonConverter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    // List<MemberTeamDto>, Page<MemberTeamDto> 만 (원소 타입은 제네릭 정보로 판단)
+    private static boolean supports(Type type, Class<?> clazz) {
+        ResolvableType resolved = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        Class<?> raw = resolved.resolve(clazz);
+        if (raw == null || (!List.class.isAssignableFrom(raw) && !Page.class.isAssignableFrom(raw))) {
+            return false;
+        }
+        return resolved.as(Iterable.class).getGeneric(0).resolve() == MemberTeamDto.class;
+    }
+
+    /*
+        mediaType 이 null 이면 (응답 가능한 타입 목록을 모을 때) 빠짐 -> produces 가 없는 엔드포인트의 기본 형식이 안 바뀜
+        Jackson 컨버터도 application/*+json 이라 이 타입을 받아 버리므로 WebConfig 에서 맨 앞에 등록
+     */
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return mediaType != null && COLUMNAR_JSON.isCompatibleWith(mediaType) && supports(type, clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return (mediaType == null || COLUMNAR_JSON.isCompatibleWith(mediaType)) && supports(type, null);
+    }
+
+    // 제네릭 정보 없이는 판단 안 함 (Type 을 받는 쪽만 씀)
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return Collections.singletonList(COLUMNAR_JSON);
+    }
+
+    @Override
+    public Object read(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        JsonNode root = objectMapper.readTree(inputMessage.getBody());
+        List<MemberTeamDto> rows = read(root);
+        Class<?> raw = ResolvableType.forType(type).resolve(Object.class);
+        if (!Page.class.isAssignableFrom(raw)) {
+            return rows;
+        }
+        JsonNode page = root.get("page");
+        if (page == null) {
+            throw new HttpMessageNotReadableException("page 정보가 없습니다.", inputMessage);
+        }
+        return new PageImpl<>(rows, PageRequest.of(page.path("number").asInt(), page.path("size").asInt()),
+                page.path("totalElements").asLong());
+    }
+
+    private static List<MemberTeamDto> read(JsonNode root) {
+        JsonNode memberIds = root.path("memberId");
+        JsonNode usernames = root.path("username");
+        JsonNode ages = root.path("age");
+        JsonNode teamIndexes = root.path("team");
+        JsonNode teamIds = root.path("teams").path("teamId");
+        JsonNode teamNames = root.path("teams").path("teamName");
+
+        int size = root.path("rows").asInt();
+        List<MemberTeamDto> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            JsonNode teamIndex = teamIndexes.path(i);
+            boolean noTeam = teamIndex.isNull() || teamIndex.isMissingNode();
+            rows.add(new MemberTeamDto(
+                    longOrNull(memberIds.path(i)),
+                    usernames.path(i).textValue(),
+                    ages.path(i).asInt(),
+                    noTeam ? null : longOrNull(teamIds.path(teamIndex.asInt())),
+                    noTeam ? null : teamNames.path(teamIndex.asInt()).textValue()));
+        }
+        return rows;
+    }
+
+    private static Long longOrNull(JsonNode node) {
+        return node.isNumber() ? node.asLong() : null;
+    }
+
+    @Override
+    public void write(Object value, MediaType contentType, HttpOutputMessage outputMessage) throws IOException {
+        write(value, null, contentType, outputMessage);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(Object value, Type type, MediaType contentType, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getHeaders().setContentType(
+                contentType != null && contentType.isConcrete() ? contentType : COLUMNAR_JSON);
+        Page<MemberTeamDto> page = value instanceof Page ? (Page<MemberTeamDto>) value : null;
+        List<MemberTeamDto> rows = page != null ? page.getContent() : (List<MemberTeamDto>) value;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputMessage.getBody(), JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            write(generator, rows, page);
+        }
+    }
+
+    public static void write(JsonGenerator generator, List<MemberTeamDto> rows, Page<?> page) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("rows", rows.size());
+
+        generator.writeArrayFieldStart("memberId");
+        for (MemberTeamDto row : rows) {
+            writeNumber(generator, row.getMemberId());
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("username");
+        for (MemberTeamDto row : rows) {
+            generator.writeString(row.getUsername());
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("age");
+        for (MemberTeamDto row : rows) {
+            generator.writeNumber(row.getAge());
+        }
+        generator.writeEndArray();
+
+        // 팀 id -> teams 번호 (처음 나온 순서)
+        Map<Long, Integer> teamIndex = new HashMap<>();
+        List<MemberTeamDto> teams = new ArrayList<>();
+        generator.writeArrayFieldStart("team");
+        for (MemberTeamDto row : rows) {
+            if (row.getTeamId() == null) {
+                generator.writeNull();
+                continue;
+            }
+            Integer index = teamIndex.get(row.getTeamId());
+            if (index == null) {
+                index = teams.size();
+                teamIndex.put(row.getTeamId(), index);
+                teams.add(row);
+            }
+            generator.writeNumber(index);
+        }
+        generator.writeEndArray();
+
+        generator.writeObjectFieldStart("teams");
+        generator.writeArrayFieldStart("teamId");
+        for (MemberTeamDto team : teams) {
+            generator.writeNumber(team.getTeamId());
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("teamName");
+        for (MemberTeamDto team : teams) {
+            generator.writeString(team.getTeamName());
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+
+        if (page != null) {
+            generator.writeObjectFieldStart("page");
+            generator.writeNumberField("number", page.getNumber());
+            generator.writeNumberField("size", page.getSize());
+            generator.writeNumberField("totalElements", page.getTotalElements());
+            generator.writeNumberField("totalPages", page.getTotalPages());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeNumber(JsonGenerator generator, Long value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package study.querydsl.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/*
+    조회를 별도 스레드 + 별도 읽기 전용 트랜잭션(커넥션)으로 돌림 (페이지 content 와 count 를 동시에 실행할 때)
+    리포지토리와 같은 읽기 전용 트랜잭션이라 라우팅이 켜져 있으면 content 와 같이 복제본으로 감
+    (read-your-writes 로 primary 에 붙어 있는 스레드면 count 도 primary)
+
+    아래 경우에는 null 을 돌려줌 -> 호출한 쪽에서 그냥 순서대로 실행
+      - 쓰기 트랜잭션 안 (다른 커넥션에서는 아직 커밋 안 된 데이터가 안 보임)
+      - 스레드 / 대기열이 꽉 참
+      - 커넥션을 내줄 풀(라우팅이 켜져 있으면 이번에 고를 복제본 / primary)에 남은 커넥션이 min-idle-connections 보다 적음
+        (요청 스레드들이 커넥션을 하나씩 잡고 두 번째 커넥션을 기다리다 풀이 말라붙는 것 방지)
+ */
+@Component
+public class ParallelQueryExecutor implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelQueryExecutor.class);
+
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTx;
+    private final ReadWriteRoutingDataSource routing;
+    private final HikariDataSource pool;
+    private final int minIdleConnections;
+    private final ThreadPoolExecutor executor;
+
+    public ParallelQueryExecutor(EntityManager em, DataSource dataSource, PlatformTransactionManager transactionManager,
+                                 @Value("${parallel-query.threads:4}") int threads,
+                                 @Value("${parallel-query.queue-size:16}") int queueSize,
+                                 @Value("${parallel-query.min-idle-connections:2}") int minIdleConnections) {
+        this.em = em;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.routing = unwrap(dataSource, ReadWriteRoutingDataSource.class);
+        this.pool = routing == null ? unwrap(dataSource, HikariDataSource.class) : null;
+        this.minIdleConnections = minIdleConnections;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), new CustomizableThreadFactory("parallel-query-"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public <T> Future<T> trySubmit(Function<EntityManager, T> query) {
+        if (!SharedReads.isShareable() || !hasSpareConnection()) {
+            return null;
+        }
+        try {
+            Callable<T> task = ReadWriteRoutingDataSource.propagatePin(() -> readOnlyTx.execute(status -> query.apply(em)));
+            return executor.submit(SqlCallerContext.propagate(task));
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    // ExecutionException 은 원래 예외로 풀어서 던짐
+    public static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("병렬 조회 대기 중 인터럽트", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // 지금 놀고 있는 커넥션 + 풀이 더 만들 수 있는 커넥션
+    private boolean hasSpareConnection() {
+        HikariDataSource target = routing != null ? routing.readPool() : pool;
+        HikariPoolMXBean mxBean = target != null ? target.getHikariPoolMXBean() : null;
+        if (mxBean == null) {
+            return true;
+        }
+        int spare = mxBean.getIdleConnections() + target.getMaximumPoolSize() - mxBean.getTotalConnections();
+        return spare >= minIdleConnections;
+    }
+
+    private static <T> T unwrap(DataSource dataSource, Class<T> type) {
+        try {
+            if (dataSource.isWrapperFor(type)) {
+                return dataSource.unwrap(type);
+            }
+        } catch (SQLException e) {
+            log.debug("커넥션 풀 정보를 가져올 수 없음", e);
+        }
+        return null;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,37 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.FlushMode;
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.EntityManager;
+
+/*
+    조회만 하고 수정하지 않을 엔티티를 읽을 때 쓰는 JPAQueryFactory
+      - 읽기 전용 힌트 : 스냅샷을 안 만들어서 메모리를 덜 쓰고 flush 때 dirty checking 대상에서 빠짐
+      - FlushMode.MANUAL : 쿼리 전에 자동 flush 안 함
+        단, 쓰기 트랜잭션 안에서는 아직 flush 안 된 변경이 결과에 빠질 수 있으므로 읽기 전용 트랜잭션이나 트랜잭션 밖에서만
+    (읽어 온 엔티티를 수정해도 DB 에 반영 안 됨)
+
+    쿼리 하나에만 적용할 때는 ReadOnlyJPAQueryFactory.readOnly(query)
+ */
+public class ReadOnlyJPAQueryFactory extends JPAQueryFactory {
+
+    public ReadOnlyJPAQueryFactory(EntityManager entityManager) {
+        super(entityManager);
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        return readOnly(super.query());
+    }
+
+    public static <Q extends JPAQuery<?>> Q readOnly(Q query) {
+        query.setHint(QueryHints.HINT_READONLY, true);
+        if (SharedReads.isShareable()) {
+            query.setHint(QueryHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+        }
+        return query;
+    }
+}
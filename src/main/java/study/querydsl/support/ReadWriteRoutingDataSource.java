@@ -0,0 +1,119 @@
+package study.querydsl.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+
+/*
+    @Transactional(readOnly = true) 는 복제본으로, 나머지(쓰기 트랜잭션, 트랜잭션 밖)는 primary 로 보냄
+
+    트랜잭션 시작(doBegin) 중에 커넥션을 가져오는데 그때는 아직 TransactionSynchronizationManager 에
+    readOnly 가 안 들어가 있음 -> RoutingJpaTransactionManager 가 시작하는 동안 beginReadOnly 로 알려줌
+    (LazyConnectionDataSourceProxy 는 p6spy 가 커넥션을 받자마자 getMetaData 를 불러서 소용 없음)
+
+    read-your-writes : 이 스레드에서 쓰기(TableChangeNotifier)가 있었으면 readYourWritesMs 동안은
+    읽기 전용 트랜잭션도 primary 로 (복제가 따라오기 전에 방금 쓴 값을 못 읽는 것 방지)
+    한 요청 안에서만 통함 -> 요청이 끝나면 SqlCallerInterceptor 가 unpin (요청 스레드는 풀에서 재사용되므로)
+    같은 클라이언트의 다음 요청은 복제본에서 읽을 수 있음 (요청을 넘어서 보장하지 않음)
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements DisposableBean {
+
+    private static final ThreadLocal<Boolean> beginningReadOnly = new ThreadLocal<>();
+    private static final ThreadLocal<Long> pinnedUntil = new ThreadLocal<>();
+
+    private final HikariDataSource primary;
+    private final ReplicaSet replicas;
+    private final long readYourWritesMs;
+
+    ReadWriteRoutingDataSource(HikariDataSource primary, ReplicaSet replicas, long readYourWritesMs) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.readYourWritesMs = readYourWritesMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return currentTarget().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return currentTarget().getConnection(username, password);
+    }
+
+    static void beginReadOnly(boolean readOnly) {
+        beginningReadOnly.set(readOnly);
+    }
+
+    static void endBegin() {
+        beginningReadOnly.remove();
+    }
+
+    void wrote() {
+        if (readYourWritesMs > 0) {
+            pinnedUntil.set(System.currentTimeMillis() + readYourWritesMs);
+        }
+    }
+
+    static void unpin() {
+        pinnedUntil.remove();
+    }
+
+    // 다른 스레드에서 실행할 작업에 지금 스레드의 read-your-writes 상태를 넘겨줌 (같은 쪽으로 라우팅되게)
+    static <T> Callable<T> propagatePin(Callable<T> task) {
+        Long captured = pinnedUntil.get();
+        return () -> {
+            if (captured != null) {
+                pinnedUntil.set(captured);
+            }
+            try {
+                return task.call();
+            } finally {
+                pinnedUntil.remove();
+            }
+        };
+    }
+
+    // 지금 읽기 전용 트랜잭션을 시작하면 커넥션을 내줄 풀 (복제본은 다음에 고를 것을 미리 봄)
+    HikariDataSource readPool() {
+        if (pinnedToPrimary()) {
+            return primary;
+        }
+        HikariDataSource replica = replicas.peek();
+        return replica != null ? replica : primary;
+    }
+
+    private DataSource currentTarget() {
+        boolean readOnly = Boolean.TRUE.equals(beginningReadOnly.get())
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (!readOnly || pinnedToPrimary()) {
+            return primary;
+        }
+        DataSource replica = replicas.select();
+        return replica != null ? replica : primary;
+    }
+
+    private boolean pinnedToPrimary() {
+        Long until = pinnedUntil.get();
+        if (until == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() < until) {
+            return true;
+        }
+        pinnedUntil.remove();
+        return false;
+    }
+
+    @Override
+    public void destroy() {
+        replicas.close();
+        primary.close();
+    }
+}
@@ -0,0 +1,123 @@
+package study.querydsl.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    읽기 전용 복제본 풀 목록
+    lagQuery 가 있으면 주기적으로 복제 지연을 재서 maxLagMs 를 넘거나 응답이 없는 복제본은 빼고 고름
+    쓸 수 있는 복제본이 하나도 없으면 select() 가 null -> primary 사용
+ */
+class ReplicaSet implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaSet.class);
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final RoutingDataSourceProperties.Strategy strategy;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService lagChecker;
+
+    ReplicaSet(RoutingDataSourceProperties properties) {
+        this.strategy = properties.getStrategy();
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            RoutingDataSourceProperties.Replica config = properties.getReplicas().get(i);
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("replica-" + i);
+            dataSource.setJdbcUrl(config.getUrl());
+            dataSource.setUsername(config.getUsername());
+            dataSource.setPassword(config.getPassword());
+            dataSource.setMaximumPoolSize(config.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            replicas.add(new Replica(dataSource));
+        }
+
+        if (StringUtils.hasText(properties.getLagQuery()) && !replicas.isEmpty()) {
+            lagChecker = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replica-lag-"));
+            lagChecker.scheduleWithFixedDelay(() -> checkLag(properties.getLagQuery(), properties.getMaxLagMs()),
+                    0, properties.getLagCheckIntervalMs(), TimeUnit.MILLISECONDS);
+        } else {
+            lagChecker = null;
+        }
+    }
+
+    HikariDataSource select() {
+        return choose(true);
+    }
+
+    // 다음 select() 가 고를 복제본 (라운드 로빈 순서는 넘기지 않음)
+    HikariDataSource peek() {
+        return choose(false);
+    }
+
+    private HikariDataSource choose(boolean advance) {
+        List<Replica> usable = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.usable) {
+                usable.add(replica);
+            }
+        }
+        if (usable.isEmpty()) {
+            return null;
+        }
+        if (strategy == RoutingDataSourceProperties.Strategy.LEAST_LOADED) {
+            return usable.stream().min(Comparator.comparingInt(Replica::activeConnections)).get().dataSource;
+        }
+        int index = advance ? next.getAndIncrement() : next.get();
+        return usable.get(Math.floorMod(index, usable.size())).dataSource;
+    }
+
+    private void checkLag(String lagQuery, long maxLagMs) {
+        for (Replica replica : replicas) {
+            boolean usable;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                usable = rs.next() && rs.getLong(1) <= maxLagMs;
+            } catch (SQLException e) {
+                usable = false;
+            }
+            if (usable != replica.usable) {
+                log.warn("복제본 {} {}", replica.dataSource.getPoolName(), usable ? "복구" : "제외 (지연 초과 또는 응답 없음)");
+            }
+            replica.usable = usable;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    private static class Replica {
+        private final HikariDataSource dataSource;
+        private volatile boolean usable = true;
+
+        private Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private int activeConnections() {
+            HikariPoolMXBean mxBean = dataSource.getHikariPoolMXBean();
+            return mxBean != null ? mxBean.getActiveConnections() : 0;
+        }
+    }
+}
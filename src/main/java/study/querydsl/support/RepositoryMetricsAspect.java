@@ -0,0 +1,128 @@
+package study.querydsl.support;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.BulkInsertResult;
+import study.querydsl.dto.BulkProgress;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSlice;
+import study.querydsl.repository.MemberSearchQueryTemplates;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/*
+    MemberRepositoryImpl(MemberRepositoryCustom) / MemberJpaRepository / MemberBulkRepository 의 모든 메서드 실행 시간과 반환 건수 기록
+      - member.repository       : 실행 시간 (method, shape, exception 태그)
+      - member.repository.rows  : 반환 건수
+    shape 태그는 MemberSearchCondition 에서 값이 있는 필드 (최대 16 가지)
+    히스토그램 / 백분위 설정은 application.yml 의 management.metrics.distribution 참고
+    실행 중에는 SqlCallerContext 에 메서드 이름을 넣어 두어 SQL 메트릭(sql.statement)의 caller 태그로 쓰임
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+    private static final String NO_CONDITION = "n/a";
+
+    private final MeterRegistry meterRegistry;
+
+    public RepositoryMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("within(study.querydsl.repository.MemberRepositoryImpl) || within(study.querydsl.repository.MemberJpaRepository)"
+            + " || within(study.querydsl.repository.MemberBulkRepository)")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        Object[] args = joinPoint.getArgs();
+        String shape = shapeOf(args);
+        AtomicLong streamedRows = method.startsWith("searchStream") ? countStreamedRows(args) : null;
+
+        String previousCaller = SqlCallerContext.enterRepositoryMethod(
+                joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + method);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            Object result = joinPoint.proceed(args);
+            long rows = streamedRows != null ? streamedRows.get() : rowsOf(result);
+            if (rows >= 0) {
+                DistributionSummary.builder("member.repository.rows")
+                        .tag("method", method)
+                        .tag("shape", shape)
+                        .register(meterRegistry)
+                        .record(rows);
+            }
+            return result;
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            SqlCallerContext.restoreRepositoryMethod(previousCaller);
+            sample.stop(Timer.builder("member.repository")
+                    .tag("method", method)
+                    .tag("shape", shape)
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+
+    private static String shapeOf(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof MemberSearchCondition) {
+                return MemberSearchQueryTemplates.shapeName(MemberSearchQueryTemplates.shapeOf((MemberSearchCondition) arg));
+            }
+        }
+        return NO_CONDITION;
+    }
+
+    /*
+        searchStream 처럼 consumer 로 결과를 넘기는 메서드는 consumer 를 감싸서 건수를 셈
+        벌크 update / delete 의 consumer 는 청크마다 불리므로 감싸지 않음 (반환된 BulkProgress 의 rows)
+     */
+    @SuppressWarnings("unchecked")
+    private static AtomicLong countStreamedRows(Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Consumer) {
+                Consumer<Object> consumer = (Consumer<Object>) args[i];
+                AtomicLong rows = new AtomicLong();
+                args[i] = (Consumer<Object>) row -> {
+                    rows.incrementAndGet();
+                    consumer.accept(row);
+                };
+                return rows;
+            }
+        }
+        return null;
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof MemberSlice) {
+            return ((MemberSlice) result).getContent().size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof BulkInsertResult) {
+            return ((BulkInsertResult) result).getRows();
+        }
+        if (result instanceof BulkProgress) {
+            return ((BulkProgress) result).getRows();
+        }
+        return -1;
+    }
+}
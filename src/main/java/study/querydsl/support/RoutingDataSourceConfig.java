@@ -0,0 +1,50 @@
+package study.querydsl.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/*
+    datasource.routing.enabled=true 일 때만 primary / 복제본 라우팅 DataSource 를 씀 (기본은 꺼져 있음)
+    primary 는 spring.datasource.*, 복제본은 datasource.routing.replicas[*]
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.routing", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(RoutingDataSourceProperties.class)
+public class RoutingDataSourceConfig {
+
+    // primary / 복제본 풀은 빈으로 만들지 않음 (DataSource 빈이 여러 개면 주입, p6spy 감싸기가 꼬임)
+    @Bean
+    ReadWriteRoutingDataSource dataSource(DataSourceProperties dataSourceProperties, RoutingDataSourceProperties properties,
+                                          TableChangeNotifier notifier) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        ReadWriteRoutingDataSource dataSource =
+                new ReadWriteRoutingDataSource(primary, new ReplicaSet(properties), properties.getReadYourWritesMs());
+        notifier.addListener(table -> dataSource.wrote());
+        return dataSource;
+    }
+
+    // 부트 기본 JpaTransactionManager 대신 (readOnly 를 커넥션 고르기 전에 알려주는) RoutingJpaTransactionManager
+    @Bean
+    PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> customizers) {
+        RoutingJpaTransactionManager transactionManager = new RoutingJpaTransactionManager();
+        customizers.ifAvailable(c -> c.customize(transactionManager));
+        return transactionManager;
+    }
+
+    // 세션이 트랜잭션이 끝나도 커넥션을 들고 있으면 (open-in-view) 다음 트랜잭션이 엉뚱한 쪽 커넥션을 씀
+    @Bean
+    HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+}
@@ -0,0 +1,35 @@
+package study.querydsl.support;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// datasource.routing.* (application.yml 참고)
+@Data
+@ConfigurationProperties(prefix = "datasource.routing")
+public class RoutingDataSourceProperties {
+
+    public enum Strategy { ROUND_ROBIN, LEAST_LOADED }
+
+    private boolean enabled;
+    private List<Replica> replicas = new ArrayList<>();
+    private Strategy strategy = Strategy.ROUND_ROBIN;
+
+    // 복제 지연을 재는 쿼리 (ms 숫자 하나를 돌려줘야 함), 비어 있으면 지연 확인 안 함
+    private String lagQuery;
+    private long maxLagMs = 1000;
+    private long lagCheckIntervalMs = 5000;
+
+    // 쓰기 후 이 시간 동안은 (요청이 끝나기 전까지만) 같은 스레드의 읽기 전용 트랜잭션도 primary 로 (0 이면 안 함)
+    private long readYourWritesMs = 1000;
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
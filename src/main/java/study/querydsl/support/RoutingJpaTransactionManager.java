@@ -0,0 +1,18 @@
+package study.querydsl.support;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+// 트랜잭션을 시작하면서 커넥션을 가져올 때 readOnly 여부를 ReadWriteRoutingDataSource 에 알려줌
+class RoutingJpaTransactionManager extends JpaTransactionManager {
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        ReadWriteRoutingDataSource.beginReadOnly(definition.isReadOnly());
+        try {
+            super.doBegin(transaction, definition);
+        } finally {
+            ReadWriteRoutingDataSource.endBegin();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.support;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+    조회 결과를 다른 요청과 공유(캐시 등) 해도 되는지 판단
+    쓰기 트랜잭션 안에서는 아직 커밋 안 된 데이터가 보일 수 있으므로 공유하지 않음
+ */
+public final class SharedReads {
+
+    private SharedReads() {
+    }
+
+    public static boolean isShareable() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
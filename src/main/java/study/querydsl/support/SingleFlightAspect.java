@@ -0,0 +1,119 @@
+package study.querydsl.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+    MemberRepositoryImpl(MemberRepositoryCustom) 의 search* 를 같은 인자로 동시에 호출하면 DB 조회는 한 번만 (single-flight)
+    먼저 온 호출이 실행하고 나머지는 그 결과를 같이 받음 (대시보드 새로고침처럼 같은 페이지 요청이 몰릴 때)
+
+      - 키는 메서드 + 인자 (조건은 normalized), 결과 객체를 같이 쓰므로 꺼낸 쪽에서 수정하면 안 됨
+      - 기다리는 건 max-wait-ms 까지, 넘으면 직접 실행
+      - 먼저 실행한 호출이 실패하면 기다리던 호출도 같은 예외
+      - member / team 이 바뀌면 진행 중인 조회에는 더 붙지 않음 (바뀌기 전에 시작한 조회일 수 있음)
+      - 쓰기 트랜잭션 안에서는 안 함 (SharedReads)
+    트랜잭션(읽기 전용)보다 먼저 감싸서 기다리는 동안 커넥션을 잡지 않음
+    그래서 member.repository 메트릭에는 실제로 실행한 호출만 남음
+
+    member.single-flight (method, result=executed | coalesced | timeout) 로 합쳐진 호출 수를 셈
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class SingleFlightAspect {
+
+    private final boolean enabled;
+    private final long maxWaitMillis;
+    private final MeterRegistry meterRegistry;
+    private final Map<List<Object>, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+    public SingleFlightAspect(TableChangeNotifier tableNotifier, MeterRegistry meterRegistry,
+                              @Value("${member.single-flight.enabled:true}") boolean enabled,
+                              @Value("${member.single-flight.max-wait-ms:2000}") long maxWaitMillis) {
+        this.enabled = enabled;
+        this.maxWaitMillis = maxWaitMillis;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("member.single-flight.in-flight", flights, Map::size).register(meterRegistry);
+
+        tableNotifier.addListener(table -> {
+            if ("member".equals(table) || "team".equals(table)) {
+                flights.clear();
+            }
+        });
+    }
+
+    @Around("execution(public * study.querydsl.repository.MemberRepositoryImpl.search*(..))")
+    public Object coalesce(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!enabled || !SharedReads.isShareable()) {
+            return joinPoint.proceed();
+        }
+        String method = joinPoint.getSignature().getName();
+        List<Object> key = keyOf(method, joinPoint.getArgs());
+
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = flights.putIfAbsent(key, flight);
+        if (running == null) {
+            count(method, "executed");
+            try {
+                Object result = joinPoint.proceed();
+                flight.complete(result);
+                return result;
+            } catch (Throwable e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(key, flight);
+            }
+        }
+
+        try {
+            Object result = running.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+            count(method, "coalesced");
+            return result;
+        } catch (ExecutionException e) {
+            count(method, "coalesced");
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            count(method, "timeout");
+            return joinPoint.proceed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("같은 조회 결과를 기다리는 중 인터럽트", e);
+        }
+    }
+
+    private static List<Object> keyOf(String method, Object[] args) {
+        List<Object> key = new ArrayList<>(args.length + 1);
+        key.add(method);
+        for (Object arg : args) {
+            key.add(arg instanceof MemberSearchCondition ? ((MemberSearchCondition) arg).normalized() : arg);
+        }
+        return key;
+    }
+
+    private void count(String method, String result) {
+        Counter.builder("member.single-flight")
+                .tag("method", method)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
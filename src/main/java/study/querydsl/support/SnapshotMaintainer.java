@@ -0,0 +1,167 @@
+package study.querydsl.support;
+
+import org.hibernate.proxy.HibernateProxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+    메모리 스냅샷을 DB 와 맞춰 두는 공통 부분 (MemberUsernameIndex, MemberHotSet, MemberAgeColumns)
+    - 엔티티 저장 / 수정 / 삭제는 커밋된 뒤에 한 건씩 반영 (applyAfterCommit)
+    - 벌크 연산은 어떤 행이 바뀌었는지 모르므로 커밋 후 백그라운드 스레드 하나에서 다시 만듦 (밀려 있는 요청은 한 번으로 합침)
+      다시 만드는 동안 들어온 변경은 따로 모아 뒀다가 새 스냅샷에 다시 적용함 (읽어 온 옛날 값이 이기지 않게)
+    - 반영 / 교체는 write lock 안에서 함
+      스냅샷을 락 없이 읽을지 (동시 자료구조) read lock 을 잡고 읽을지 (배열) 는 쓰는 쪽이 정함
+ */
+public class SnapshotMaintainer<S> {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotMaintainer.class);
+
+    private final String name;
+    private final Supplier<S> loader;
+    private final ExecutorService rebuildExecutor;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile S snapshot;
+    // 다시 만드는 중에 들어온 변경, 만드는 중이 아니면 null
+    private List<Consumer<S>> changedWhileBuilding;
+
+    // initial 은 처음 다 만들어지기 전까지 쓸 스냅샷 (null 이면 그동안 변경은 버림)
+    public SnapshotMaintainer(String name, S initial, Supplier<S> loader) {
+        this.name = name;
+        this.loader = loader;
+        this.snapshot = initial;
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // 엔티티 변경은 rowListener 로, tables 에 대한 벌크 연산은 다시 만들기로
+    public void listen(EntityChangeNotifier entityNotifier, TableChangeNotifier tableNotifier,
+                       EntityChangeListener rowListener, String... tables) {
+        List<String> watched = Arrays.asList(tables);
+        entityNotifier.addListener(rowListener);
+        tableNotifier.addListener(new TableChangeListener() {
+            @Override
+            public void onTableChanged(String table) {
+            }
+
+            @Override
+            public void onStatement(String table, String sql) {
+                if (watched.contains(table) && !entityNotifier.isEntityStatement(sql)) {
+                    afterCommit(SnapshotMaintainer.this::scheduleRebuild);
+                }
+            }
+        });
+    }
+
+    public S current() {
+        return snapshot;
+    }
+
+    public Lock readLock() {
+        return lock.readLock();
+    }
+
+    // 시작할 때 / 벌크 연산 후에 한 번에 하나씩만 돎
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedWhileBuilding = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        S fresh = null;
+        try {
+            fresh = loader.get();
+        } finally {
+            // 실패하면 예전 스냅샷을 그대로 씀 (그 사이 변경은 예전 스냅샷에도 반영되어 있음)
+            lock.writeLock().lock();
+            try {
+                if (fresh != null) {
+                    for (Consumer<S> change : changedWhileBuilding) {
+                        change.accept(fresh);
+                    }
+                    snapshot = fresh;
+                }
+                changedWhileBuilding = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                rebuildScheduled.set(false);
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    log.warn("{} rebuild failed", name, e);
+                }
+            });
+        }
+    }
+
+    // 트랜잭션 밖이면 바로 반영
+    public void applyAfterCommit(Consumer<S> change) {
+        afterCommit(() -> apply(change));
+    }
+
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    // 엔티티 상태 배열의 team 값 (지연 로딩 프록시면 초기화하지 않고 id 만 꺼냄)
+    public static Long teamId(Object team) {
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team != null ? ((Team) team).getId() : null;
+    }
+
+    private void apply(Consumer<S> change) {
+        lock.writeLock().lock();
+        try {
+            if (snapshot != null) {
+                change.accept(snapshot);
+            }
+            if (changedWhileBuilding != null) {
+                changedWhileBuilding.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
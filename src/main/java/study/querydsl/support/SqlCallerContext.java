@@ -0,0 +1,67 @@
+package study.querydsl.support;
+
+import java.util.concurrent.Callable;
+
+/*
+    지금 실행되는 SQL 을 누가 보냈는지 (HTTP 엔드포인트 / 리포지토리 메서드)
+    SqlCallerInterceptor, RepositoryMetricsAspect 가 채우고 SqlMetricsListener 가 태그로 씀
+ */
+public final class SqlCallerContext {
+
+    static final String UNKNOWN = "none";
+
+    private static final ThreadLocal<String> endpoint = new ThreadLocal<>();
+    private static final ThreadLocal<String> repositoryMethod = new ThreadLocal<>();
+
+    private SqlCallerContext() {
+    }
+
+    public static String endpoint() {
+        String value = endpoint.get();
+        return value != null ? value : UNKNOWN;
+    }
+
+    public static String repositoryMethod() {
+        String value = repositoryMethod.get();
+        return value != null ? value : UNKNOWN;
+    }
+
+    static void setEndpoint(String value) {
+        if (value == null) {
+            endpoint.remove();
+        } else {
+            endpoint.set(value);
+        }
+    }
+
+    // 중첩 호출을 위해 이전 값을 돌려줌 -> finally 에서 restoreRepositoryMethod
+    static String enterRepositoryMethod(String value) {
+        String previous = repositoryMethod.get();
+        repositoryMethod.set(value);
+        return previous;
+    }
+
+    static void restoreRepositoryMethod(String previous) {
+        if (previous == null) {
+            repositoryMethod.remove();
+        } else {
+            repositoryMethod.set(previous);
+        }
+    }
+
+    // 다른 스레드에서 실행할 작업에 지금 값을 넘겨줌 (부르는 시점의 값을 잡아 둠)
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        String capturedEndpoint = endpoint.get();
+        String capturedMethod = repositoryMethod.get();
+        return () -> {
+            setEndpoint(capturedEndpoint);
+            String previous = enterRepositoryMethod(capturedMethod);
+            try {
+                return task.call();
+            } finally {
+                restoreRepositoryMethod(previous);
+                setEndpoint(null);
+            }
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package study.querydsl.support;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/*
+    요청 매핑 패턴(/v1/members 등)을 SqlCallerContext 에 넣어 두고
+    요청 동안 나간 SQL 을 세어서 같은 구문이 반복되면 N+1 경고
+    요청이 끝나면 read-your-writes 고정도 풀어 줌 (ReadWriteRoutingDataSource)
+ */
+public class SqlCallerInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String SCOPE_ATTRIBUTE = SqlCallerInterceptor.class.getName() + ".SCOPE";
+
+    private final int repeatThreshold;
+
+    public SqlCallerInterceptor(int repeatThreshold) {
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        SqlCallerContext.setEndpoint(pattern != null ? pattern.toString() : request.getRequestURI());
+        request.setAttribute(SCOPE_ATTRIBUTE, SqlStatementCounter.open());
+        return true;
+    }
+
+    // 비동기 처리로 넘어가면 원래 스레드의 값은 여기서 정리 (afterCompletion 은 다른 스레드에서 불림)
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        finish(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        finish(request);
+    }
+
+    private void finish(HttpServletRequest request) {
+        SqlCallerContext.setEndpoint(null);
+        ReadWriteRoutingDataSource.unpin();
+        SqlStatementCounter.Scope scope = (SqlStatementCounter.Scope) request.getAttribute(SCOPE_ATTRIBUTE);
+        if (scope != null) {
+            request.removeAttribute(SCOPE_ATTRIBUTE);
+            scope.close();
+            SqlStatementCounter.warnRepeated(request.getMethod() + " " + request.getRequestURI(), scope, repeatThreshold);
+        }
+    }
+}
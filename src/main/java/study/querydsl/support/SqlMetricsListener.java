@@ -0,0 +1,156 @@
+package study.querydsl.support;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+    p6spy 이벤트로 SQL 성능 기록 (p6spy-spring-boot-starter 가 JdbcEventListener 빈을 자동 등록)
+      - sql.statement       : 실행 시간 (shape, type, endpoint, caller 태그)
+      - sql.statement.rows  : 조회 / 변경 건수
+    threshold 를 넘는 구문은 SLOW_SQL 로거로 따로 남김 (logback-spring.xml 에서 slow-sql.log 파일로 분리)
+    구문 수는 SqlStatementCounter 로도 넘김 (트랜잭션 단위 N+1 경고는 여기서, 요청 단위는 SqlCallerInterceptor)
+
+    MeterRegistry 는 ObjectProvider 로 늦게 꺼냄
+    -> 생성자에서 바로 받으면 DataSource 가 p6spy 로 감싸지기 전에 만들어져서 이벤트가 안 들어옴
+ */
+@Component
+public class SqlMetricsListener extends JdbcEventListener {
+
+    private static final Logger slowLog = LoggerFactory.getLogger("SLOW_SQL");
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final SqlStatementNormalizer normalizer;
+    private final long slowThresholdNanos;
+    private final int repeatThreshold;
+    // ResultSet 별로 읽은 건수 (닫히지 않은 ResultSet 이 남아도 새지 않게 WeakHashMap)
+    private final Map<ResultSetInformation, long[]> fetchedRows = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public SqlMetricsListener(ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${sql.metrics.max-shapes:500}") int maxShapes,
+                              @Value("${sql.metrics.slow-threshold-ms:200}") long slowThresholdMillis,
+                              @Value("${sql.n-plus-one.threshold:10}") int repeatThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.normalizer = new SqlStatementNormalizer(maxShapes);
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    // JPA 는 PreparedStatement 를 쓰므로 PreparedStatementInformation 쪽 콜백이 주로 불림
+    @Override
+    public void onAfterExecuteQuery(PreparedStatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        record(statementInformation, "query", timeElapsedNanos, -1);
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(PreparedStatementInformation statementInformation, long timeElapsedNanos, int rowCount, SQLException e) {
+        record(statementInformation, "update", timeElapsedNanos, rowCount);
+    }
+
+    @Override
+    public void onAfterExecute(PreparedStatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        record(statementInformation, "execute", timeElapsedNanos, -1);
+    }
+
+    @Override
+    public void onAfterExecuteQuery(StatementInformation statementInformation, long timeElapsedNanos, String sql, SQLException e) {
+        record(statementInformation, "query", timeElapsedNanos, -1);
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(StatementInformation statementInformation, long timeElapsedNanos, String sql, int rowCount, SQLException e) {
+        record(statementInformation, "update", timeElapsedNanos, rowCount);
+    }
+
+    @Override
+    public void onAfterExecuteBatch(StatementInformation statementInformation, long timeElapsedNanos, int[] updateCounts, SQLException e) {
+        long rows = 0;
+        if (updateCounts != null) {
+            for (int count : updateCounts) {
+                rows += Math.max(count, 0);
+            }
+        }
+        record(statementInformation, "batch", timeElapsedNanos, rows);
+    }
+
+    @Override
+    public void onAfterExecute(StatementInformation statementInformation, long timeElapsedNanos, String sql, SQLException e) {
+        record(statementInformation, "execute", timeElapsedNanos, -1);
+    }
+
+    // 조회 건수는 ResultSet 을 다 읽고 닫을 때 알 수 있음
+    @Override
+    public void onAfterResultSetNext(ResultSetInformation resultSetInformation, long timeElapsedNanos, boolean hasNext, SQLException e) {
+        if (hasNext) {
+            fetchedRows.computeIfAbsent(resultSetInformation, key -> new long[1])[0]++;
+        }
+    }
+
+    @Override
+    public void onAfterResultSetClose(ResultSetInformation resultSetInformation, SQLException e) {
+        long[] rows = fetchedRows.remove(resultSetInformation);
+        rows(resultSetInformation.getStatementInformation(), "query").record(rows != null ? rows[0] : 0);
+    }
+
+    private void record(StatementInformation statementInformation, String type, long elapsedNanos, long rows) {
+        String shape = normalizer.shapeOf(statementInformation.getSql());
+        countStatement(shape);
+        Timer.builder("sql.statement")
+                .tags("shape", shape, "type", type,
+                        "endpoint", SqlCallerContext.endpoint(), "caller", SqlCallerContext.repositoryMethod())
+                .register(meterRegistry.getObject())
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (rows >= 0) {
+            rows(statementInformation, type).record(rows);
+        }
+
+        if (elapsedNanos >= slowThresholdNanos) {
+            slowLog.warn("{}ms endpoint={} caller={} rows={} sql={}",
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), SqlCallerContext.endpoint(),
+                    SqlCallerContext.repositoryMethod(), rows >= 0 ? rows : "?",
+                    statementInformation.getSqlWithValues());
+        }
+    }
+
+    // 트랜잭션마다 Scope 하나를 열어 두고 끝날 때 반복 구문 확인
+    private void countStatement(String shape) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(this)) {
+            SqlStatementCounter.Scope scope = SqlStatementCounter.open();
+            TransactionSynchronizationManager.bindResource(this, scope);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(SqlMetricsListener.this);
+                    scope.close();
+                    SqlStatementCounter.warnRepeated("transaction", scope, repeatThreshold);
+                }
+            });
+        }
+        SqlStatementCounter.record(shape);
+    }
+
+    private DistributionSummary rows(StatementInformation statementInformation, String type) {
+        return DistributionSummary.builder("sql.statement.rows")
+                .tags("shape", normalizer.shapeOf(statementInformation.getSql()), "type", type,
+                        "endpoint", SqlCallerContext.endpoint(), "caller", SqlCallerContext.repositoryMethod())
+                .register(meterRegistry.getObject());
+    }
+}
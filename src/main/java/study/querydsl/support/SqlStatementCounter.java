@@ -0,0 +1,88 @@
+package study.querydsl.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    스레드 단위로 나간 SQL 구문 수를 셈 (SqlMetricsListener 가 record 호출)
+    열려 있는 Scope 전부에 같이 집계되므로 요청 / 트랜잭션 / 테스트 범위를 겹쳐서 쓸 수 있음
+
+    테스트에서 구문 수 예산 확인
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            memberRepository.searchPageComplex(condition, pageRequest);
+            assertThat(scope.total()).isLessThanOrEqualTo(2);
+        }
+
+    같은 모양 구문이 threshold 번 이상 반복되면 N+1 의심 -> warnRepeated 로 경고
+ */
+public final class SqlStatementCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementCounter.class);
+
+    private static final ThreadLocal<Deque<Scope>> scopes = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private SqlStatementCounter() {
+    }
+
+    public static Scope open() {
+        Scope scope = new Scope();
+        scopes.get().push(scope);
+        return scope;
+    }
+
+    static void record(String shape) {
+        for (Scope scope : scopes.get()) {
+            scope.add(shape);
+        }
+    }
+
+    static void warnRepeated(String where, Scope scope, int threshold) {
+        scope.repeated(threshold).forEach((shape, count) ->
+                log.warn("N+1 의심: {} 에서 같은 구문 {}번 실행 sql={}", where, count, shape));
+    }
+
+    public static class Scope implements AutoCloseable {
+
+        private final Map<String, Integer> counts = new LinkedHashMap<>();
+        private int total;
+
+        private void add(String shape) {
+            total++;
+            counts.merge(shape, 1, Integer::sum);
+        }
+
+        public int total() {
+            return total;
+        }
+
+        public int count(String shape) {
+            return counts.getOrDefault(shape, 0);
+        }
+
+        public Map<String, Integer> counts() {
+            return Collections.unmodifiableMap(counts);
+        }
+
+        // threshold 번 이상 나간 구문 모양
+        public Map<String, Integer> repeated(int threshold) {
+            Map<String, Integer> repeated = new LinkedHashMap<>();
+            counts.forEach((shape, count) -> {
+                if (count >= threshold) {
+                    repeated.put(shape, count);
+                }
+            });
+            return repeated;
+        }
+
+        @Override
+        public void close() {
+            scopes.get().remove(this);
+        }
+    }
+}
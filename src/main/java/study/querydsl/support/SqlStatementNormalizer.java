@@ -0,0 +1,52 @@
+package study.querydsl.support;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/*
+    SQL 을 "모양" 으로 정규화 (메트릭 태그용)
+    주석 / 문자열, 숫자 리터럴 / in (?, ?, ...) 목록 / 공백 차이를 없앰
+    태그 수가 무한히 늘지 않도록 최대 maxShapes 개 까지만 기억하고 나머지는 "other"
+ */
+public class SqlStatementNormalizer {
+
+    static final String OTHER = "other";
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final int maxShapes;
+    private final Map<String, String> shapes = new ConcurrentHashMap<>();
+
+    public SqlStatementNormalizer(int maxShapes) {
+        this.maxShapes = maxShapes;
+    }
+
+    public String shapeOf(String sql) {
+        if (sql == null) {
+            return OTHER;
+        }
+        String shape = shapes.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        shape = normalize(sql);
+        if (shapes.size() < maxShapes) {
+            shapes.putIfAbsent(sql, shape);
+            return shape;
+        }
+        return shapes.containsValue(shape) ? shape : OTHER;
+    }
+
+    static String normalize(String sql) {
+        String s = COMMENT.matcher(sql).replaceAll(" ");
+        s = STRING_LITERAL.matcher(s).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        s = IN_LIST.matcher(s).replaceAll("in (?)");
+        return WHITESPACE.matcher(s).replaceAll(" ").trim().toLowerCase();
+    }
+}
@@ -0,0 +1,11 @@
+package study.querydsl.support;
+
+@FunctionalInterface
+public interface TableChangeListener {
+    // table 은 소문자 물리 테이블 명 (member, team ...)
+    void onTableChanged(String table);
+
+    // 구문이 나간 시점에만 한 번 (트랜잭션 종료 후에는 안 불림), 어떤 SQL 이었는지 봐야 할 때
+    default void onStatement(String table, String sql) {
+    }
+}
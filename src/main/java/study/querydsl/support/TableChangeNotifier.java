@@ -0,0 +1,60 @@
+package study.querydsl.support;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+    insert / update / delete 가 나간 테이블을 리스너들에게 알려줌
+    엔티티 저장, 벌크 연산(JPQL update/delete) 모두 SQL 기준으로 잡힘
+
+    구문이 나간 시점에 한 번, 트랜잭션이 끝난 뒤에 한 번 더 알림
+    (커밋 전에 다른 스레드가 옛날 데이터로 캐시를 다시 채워도 커밋 후에 다시 비워짐)
+    REQUIRES_NEW 로 연 안쪽 트랜잭션은 자기가 끝날 때 알림 (TransactionSynchronizations)
+ */
+@Component
+public class TableChangeNotifier {
+
+    private final List<TableChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(TableChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void tableChanged(String table, String sql) {
+        for (TableChangeListener listener : listeners) {
+            listener.onStatement(table, sql);
+        }
+        fire(table);
+
+        PendingTables pending = TransactionSynchronizations.getOrRegister(PendingTables.class,
+                p -> p.owner() == this, PendingTables::new);
+        if (pending != null) {
+            pending.tables.add(table);
+        }
+    }
+
+    private void fire(String table) {
+        for (TableChangeListener listener : listeners) {
+            listener.onTableChanged(table);
+        }
+    }
+
+    // 이 트랜잭션에서 바뀐 테이블, 트랜잭션이 끝나면 한 번 더 알림
+    private class PendingTables implements TransactionSynchronization {
+        private final Set<String> tables = new HashSet<>();
+
+        private TableChangeNotifier owner() {
+            return TableChangeNotifier.this;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            tables.forEach(TableChangeNotifier.this::fire);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+
+/*
+    하이버네이트가 실행하는 모든 SQL 을 보고 변경 구문이면 대상 테이블을 notifier 에 넘김
+    SQL 자체는 바꾸지 않음
+ */
+public class TableChangeStatementInspector implements StatementInspector {
+
+    private final TableChangeNotifier notifier;
+
+    public TableChangeStatementInspector(TableChangeNotifier notifier) {
+        this.notifier = notifier;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        String table = changedTable(sql);
+        if (table != null) {
+            notifier.tableChanged(table, sql);
+        }
+        return sql;
+    }
+
+    static String changedTable(String sql) {
+        String s = stripComments(sql).toLowerCase(Locale.ROOT);
+        if (s.startsWith("insert into ")) {
+            return firstToken(s, "insert into ".length());
+        }
+        if (s.startsWith("merge into ")) {
+            return firstToken(s, "merge into ".length());
+        }
+        if (s.startsWith("delete from ")) {
+            return firstToken(s, "delete from ".length());
+        }
+        if (s.startsWith("update ")) {
+            return firstToken(s, "update ".length());
+        }
+        return null;
+    }
+
+    // use_sql_comments 옵션이 켜져 있으면 앞에 /* ... */ 주석이 붙어서 옴
+    public static String stripComments(String sql) {
+        String s = sql.trim();
+        while (s.startsWith("/*")) {
+            int end = s.indexOf("*/");
+            if (end < 0) {
+                return "";
+            }
+            s = s.substring(end + 2).trim();
+        }
+        return s;
+    }
+
+    private static String firstToken(String s, int from) {
+        int end = from;
+        while (end < s.length() && !Character.isWhitespace(s.charAt(end)) && s.charAt(end) != '(') {
+            end++;
+        }
+        return s.substring(from, end);
+    }
+}
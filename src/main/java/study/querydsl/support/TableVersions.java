@@ -0,0 +1,67 @@
+package study.querydsl.support;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    테이블마다 바뀔 때마다 1 씩 올라가는 버전 (TableChangeNotifier 기준이라 엔티티 저장, 벌크 연산 모두 포함)
+    구문이 나갈 때 한 번, 트랜잭션이 끝난 뒤에 한 번 더 올라감 -> 커밋 전에 읽어 간 버전은 커밋 후에 안 맞음
+
+    조회 결과의 ETag 로 씀 (조회 전에 버전을 읽으므로 ETag 가 결과보다 새 데이터를 가리키는 일은 없음)
+    버전은 메모리에만 있으므로 서버가 뜬 시각(epoch)을 같이 넣음
+    이 서버를 거치지 않은 변경(다른 인스턴스, DB 직접 수정)은 모름
+ */
+@Component
+public class TableVersions {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public TableVersions(TableChangeNotifier tableNotifier) {
+        tableNotifier.addListener(table -> counter(table).incrementAndGet());
+    }
+
+    public long version(String table) {
+        return counter(table).get();
+    }
+
+    /*
+        tables 버전 + 요청(경로, 파라미터, Accept) 로 만든 약한 ETag
+        If-None-Match 와 같으면 304 로 끝내고 true (컨트롤러는 조회 없이 null 을 돌려주면 됨)
+        Accept 에 따라 응답 형식이 달라지므로 Vary: Accept 도 붙임
+     */
+    public boolean checkNotModified(ServletWebRequest request, String... tables) {
+        StringBuilder etag = new StringBuilder("W/\"").append(epoch);
+        for (String table : tables) {
+            etag.append('-').append(version(table));
+        }
+        etag.append('-').append(requestHash(request.getRequest())).append('"');
+
+        if (request.getResponse() != null) {
+            request.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return request.checkNotModified(etag.toString());
+    }
+
+    // 파라미터는 순서와 상관없게 정렬해서
+    private static String requestHash(HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(request.getRequestURI());
+        new TreeMap<>(request.getParameterMap()).forEach((name, values) ->
+                key.append('&').append(name).append('=').append(String.join(",", values)));
+        key.append('|').append(request.getHeader(HttpHeaders.ACCEPT));
+        return DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    private AtomicLong counter(String table) {
+        return versions.computeIfAbsent(table, t -> new AtomicLong());
+    }
+}
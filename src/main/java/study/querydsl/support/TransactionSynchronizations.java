@@ -0,0 +1,35 @@
+package study.querydsl.support;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/*
+    트랜잭션마다 모아 두는 값은 bindResource 대신 등록한 TransactionSynchronization 객체에 들고 있음
+      bindResource 로 묶은 값은 REQUIRES_NEW 에서 보류되지 않아서 안쪽 트랜잭션이 바깥 트랜잭션 것을 같이 씀
+      (안쪽이 커밋돼도 바깥이 끝날 때까지 반영이 밀리고, 바깥이 롤백되면 버려짐)
+      synchronization 은 트랜잭션과 같이 보류되었다가 바깥 트랜잭션으로 돌아오면 다시 보임
+ */
+public final class TransactionSynchronizations {
+
+    private TransactionSynchronizations() {
+    }
+
+    // 지금 트랜잭션에 등록된 type 중 owned 에 맞는 것, 없으면 create 로 만들어서 등록 (동기화가 꺼져 있으면 null)
+    public static <S extends TransactionSynchronization> S getOrRegister(Class<S> type, Predicate<? super S> owned,
+                                                                         Supplier<S> create) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (type.isInstance(synchronization) && owned.test(type.cast(synchronization))) {
+                return type.cast(synchronization);
+            }
+        }
+        S created = create.get();
+        TransactionSynchronizationManager.registerSynchronization(created);
+        return created;
+    }
+}
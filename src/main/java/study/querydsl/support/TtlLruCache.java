@@ -0,0 +1,100 @@
+package study.querydsl.support;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/*
+    크기(LRU) + 만료시간(TTL) 으로 제한되는 단순 캐시
+    invalidate 가 일어나면 generation 이 올라가서, 그 전에 계산을 시작한 값은 put 되지 않음
+    (계산 중에 데이터가 바뀌었는데 옛날 값이 캐시에 들어가는 것을 막음)
+ */
+public class TtlLruCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long generation;
+
+    public TtlLruCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > TtlLruCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.createdAt > ttlNanos) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    // 계산 시작 시점의 generation 과 같을 때만 저장
+    public synchronized boolean put(K key, V value, long expectedGeneration) {
+        if (generation != expectedGeneration) {
+            return false;
+        }
+        entries.put(key, new Entry<>(value, System.nanoTime()));
+        return true;
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized void invalidateIf(Predicate<K> predicate) {
+        generation++;
+        Iterator<K> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (predicate.test(keys.next())) {
+                keys.remove();
+            }
+        }
+    }
+
+    // 값까지 보고 지움, 지운 개수 반환
+    public synchronized int invalidateIf(BiPredicate<K, V> predicate) {
+        generation++;
+        int removed = 0;
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = it.next();
+            if (predicate.test(entry.getKey(), entry.getValue().value)) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long createdAt;
+
+        private Entry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
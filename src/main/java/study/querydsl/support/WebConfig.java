@@ -0,0 +1,33 @@
+package study.querydsl.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final int repeatThreshold;
+    private final ObjectMapper objectMapper;
+
+    public WebConfig(@Value("${sql.n-plus-one.threshold:10}") int repeatThreshold, ObjectMapper objectMapper) {
+        this.repeatThreshold = repeatThreshold;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new SqlCallerInterceptor(repeatThreshold));
+    }
+
+    // Accept 로 골랐을 때 Jackson 컨버터보다 먼저 잡히도록 맨 앞에
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new MemberColumnarJsonConverter(objectMapper));
+    }
+}
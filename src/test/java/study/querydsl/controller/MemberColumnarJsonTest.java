@@ -0,0 +1,151 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.support.MemberColumnarJsonConverter;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Type;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.support.MemberColumnarJsonConverter.COLUMNAR_JSON;
+
+/*
+    컨텍스트는 MemberControllerETagTest 와 같은 설정이라 같이 씀
+ */
+@SpringBootTest(properties = "spring.jpa.hibernate.ddl-auto=update")
+@AutoConfigureMockMvc
+class MemberColumnarJsonTest {
+
+    @Autowired MockMvc mockMvc;
+    @Autowired ObjectMapper objectMapper;
+    @Autowired EntityManager em;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired MemberRepository memberRepository;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("member" + i, 10 + i, i % 3 == 0 ? teamB : teamA));
+            }
+            em.persist(new Member("loner", 99));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void sameRowsAsDefaultJson() throws Exception{
+        JsonNode rows = objectMapper.readTree(mockMvc.perform(get("/v1/members"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString());
+        JsonNode columns = objectMapper.readTree(mockMvc.perform(get("/v1/members").accept(COLUMNAR_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(COLUMNAR_JSON))
+                .andReturn().getResponse().getContentAsString());
+
+        assertThat(columns.get("rows").asInt()).isEqualTo(11);
+        // 팀은 두 개만 사전에
+        assertThat(columns.get("teams").get("teamName")).hasSize(2);
+        for (int i = 0; i < rows.size(); i++) {
+            JsonNode row = rows.get(i);
+            assertThat(columns.get("memberId").get(i)).isEqualTo(row.get("memberId"));
+            assertThat(columns.get("username").get(i)).isEqualTo(row.get("username"));
+            assertThat(columns.get("age").get(i)).isEqualTo(row.get("age"));
+            JsonNode teamIndex = columns.get("team").get(i);
+            if (row.get("teamId").isNull()) {
+                assertThat(teamIndex.isNull()).isTrue();
+            } else {
+                assertThat(columns.get("teams").get("teamId").get(teamIndex.asInt())).isEqualTo(row.get("teamId"));
+                assertThat(columns.get("teams").get("teamName").get(teamIndex.asInt())).isEqualTo(row.get("teamName"));
+            }
+        }
+    }
+
+    @Test
+    public void pageAndNegotiation() throws Exception{
+        JsonNode page = objectMapper.readTree(mockMvc.perform(get("/v3/members").param("size", "4").param("page", "1")
+                        .accept(COLUMNAR_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertThat(page.get("rows").asInt()).isEqualTo(4);
+        assertThat(page.get("page").get("number").asInt()).isEqualTo(1);
+        assertThat(page.get("page").get("totalElements").asLong()).isEqualTo(11);
+        assertThat(page.get("page").get("totalPages").asInt()).isEqualTo(3);
+
+        // 형식마다 ETag 가 다름
+        String jsonETag = mockMvc.perform(get("/v3/members").accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/v3/members").accept(COLUMNAR_JSON).header(HttpHeaders.IF_NONE_MATCH, jsonETag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(COLUMNAR_JSON));
+
+        // 아무 타입이나 받으면 기존 JSON, 둘 다 적으면 Accept 순서대로
+        mockMvc.perform(get("/v3/members").accept(MediaType.ALL))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        mockMvc.perform(get("/v3/members").accept(MediaType.APPLICATION_JSON, COLUMNAR_JSON))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        mockMvc.perform(get("/v3/members").accept(COLUMNAR_JSON, MediaType.APPLICATION_JSON))
+                .andExpect(content().contentTypeCompatibleWith(COLUMNAR_JSON));
+    }
+
+    // 같은 형식을 클라이언트 쪽에서 Page<MemberTeamDto> 로 다시 읽음
+    @Test
+    @SuppressWarnings("unchecked")
+    public void readBack() throws Exception{
+        byte[] body = mockMvc.perform(get("/v3/members").param("size", "4").accept(COLUMNAR_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        MemberColumnarJsonConverter converter = new MemberColumnarJsonConverter(objectMapper);
+        Type pageType = new ParameterizedTypeReference<Page<MemberTeamDto>>() {}.getType();
+        assertThat(converter.canRead(pageType, null, COLUMNAR_JSON)).isTrue();
+        assertThat(converter.canRead(pageType, null, MediaType.APPLICATION_JSON)).isFalse();
+
+        Page<MemberTeamDto> page = (Page<MemberTeamDto>) converter.read(pageType, null, new MockHttpInputMessage(body));
+        Page<MemberTeamDto> expected = memberRepository.searchPageComplex(new MemberSearchCondition(), PageRequest.of(0, 4));
+        assertThat(page.getContent()).isEqualTo(expected.getContent());
+        assertThat(page.getTotalElements()).isEqualTo(11);
+        assertThat(page.getSize()).isEqualTo(4);
+    }
+}
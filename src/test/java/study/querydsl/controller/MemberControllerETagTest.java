@@ -0,0 +1,123 @@
+package study.querydsl.controller;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementCounter;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    버전은 커밋된 뒤에도 올라가므로 @Transactional 대신 트랜잭션을 직접 나눠서 실행하고 끝나면 데이터를 지움
+    컨텍스트가 따로 뜨므로 스키마는 다시 만들지 않음 (MemberResultCacheTest 참고)
+ */
+@SpringBootTest(properties = "spring.jpa.hibernate.ddl-auto=update")
+@AutoConfigureMockMvc
+class MemberControllerETagTest {
+
+    @Autowired MockMvc mockMvc;
+    @Autowired EntityManager em;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void notModifiedWithoutQuery() throws Exception{
+        String etag = mockMvc.perform(get("/v3/members").param("teamName", "teamA"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("W/\"");
+
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            mockMvc.perform(get("/v3/members").param("teamName", "teamA").header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+            assertThat(scope.total()).isZero();
+        }
+
+        // 다른 조건 / 다른 엔드포인트는 다른 ETag
+        mockMvc.perform(get("/v3/members").param("teamName", "teamB").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/v1/members").param("teamName", "teamA").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+
+        // count 전략을 고른 v3 도 같은 방식, 전략이 다르면 다른 ETag
+        String counted = mockMvc.perform(get("/v3/members").param("count", "capped:100"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/v3/members").param("count", "capped:100").header(HttpHeaders.IF_NONE_MATCH, counted))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/v3/members").param("count", "estimated").header(HttpHeaders.IF_NONE_MATCH, counted))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void changedAfterEntityAndBulkWrites() throws Exception{
+        String etag = mockMvc.perform(get("/v1/members"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em).selectFrom(member)
+                .where(member.username.eq("member1")).fetchOne().setAge(11));
+        String afterUpdate = mockMvc.perform(get("/v1/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(afterUpdate).isNotEqualTo(etag);
+
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em).update(team)
+                .set(team.name, "teamB")
+                .execute());
+        mockMvc.perform(get("/v1/members").header(HttpHeaders.IF_NONE_MATCH, afterUpdate))
+                .andExpect(status().isOk());
+
+        // 롤백도 버전은 올라감 (보수적으로 다시 조회)
+        String beforeRollback = mockMvc.perform(get("/v1/members"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/v1/members").header(HttpHeaders.IF_NONE_MATCH, beforeRollback))
+                .andExpect(status().isNotModified());
+        tx.executeWithoutResult(status -> {
+            new JPAQueryFactory(em).delete(member).execute();
+            status.setRollbackOnly();
+        });
+        mockMvc.perform(get("/v1/members").header(HttpHeaders.IF_NONE_MATCH, beforeRollback))
+                .andExpect(status().isOk());
+    }
+}
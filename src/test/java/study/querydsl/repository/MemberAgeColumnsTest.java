@@ -0,0 +1,145 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.AgeStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementCounter;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    스냅샷은 커밋된 변경만 반영하므로 @Transactional 대신 트랜잭션을 직접 나눠서 실행하고 끝나면 데이터를 지움
+ */
+@SpringBootTest
+class MemberAgeColumnsTest {
+
+    @Autowired EntityManager em;
+    @Autowired MemberAgeColumns columns;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            em.persist(new Member("member4", 40, teamB));
+            em.persist(new Member("loner", 40));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void sameResultsAsQueries() throws Exception{
+        Tuple expected = tx.execute(status -> new JPAQueryFactory(em)
+                .select(member.count(), member.age.sum(), member.age.avg(), member.age.max(), member.age.min())
+                .from(member)
+                .fetchOne());
+        List<Tuple> expectedByTeam = tx.execute(status -> new JPAQueryFactory(em)
+                .select(team.name, member.count(), member.age.avg())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .fetch());
+
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            AgeStatsDto stats = columns.stats();
+            assertThat(stats.getCount()).isEqualTo(expected.get(member.count()));
+            assertThat(stats.getSum()).isEqualTo(expected.get(member.age.sum()).longValue());
+            assertThat(stats.getAvg()).isEqualTo(expected.get(member.age.avg()));
+            assertThat(stats.getMax()).isEqualTo(expected.get(member.age.max()));
+            assertThat(stats.getMin()).isEqualTo(expected.get(member.age.min()));
+
+            List<AgeStatsDto> byTeam = columns.statsByTeam();
+            assertThat(byTeam).extracting("teamName").containsExactly("teamA", "teamB");
+            for (int i = 0; i < byTeam.size(); i++) {
+                assertThat(byTeam.get(i).getCount()).isEqualTo(expectedByTeam.get(i).get(member.count()));
+                assertThat(byTeam.get(i).getAvg()).isEqualTo(expectedByTeam.get(i).get(member.age.avg()));
+            }
+
+            assertThat(columns.countByAge(20, 30)).isEqualTo(2);
+            assertThat(columns.countByAge(null, 30)).isEqualTo(3);
+            // 나이가 같으면 id 순
+            assertThat(columns.oldest(3)).extracting("age").containsExactly(40, 40, 30);
+            assertThat(columns.oldest(3).get(2).getTeamId()).isNotNull();
+            assertThat(scope.total()).isZero();
+        }
+    }
+
+    @Test
+    public void followCommittedChanges() throws Exception{
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.selectFrom(member).where(member.username.eq("member1")).fetchOne().setAge(90);
+            em.remove(queryFactory.selectFrom(member).where(member.username.eq("loner")).fetchOne());
+            queryFactory.selectFrom(team).where(team.name.eq("teamB")).fetchOne().setName("teamA");
+            em.persist(new Member("member5", 5));
+        });
+        AgeStatsDto stats = columns.stats();
+        assertThat(stats.getCount()).isEqualTo(5);
+        assertThat(stats.getSum()).isEqualTo(90 + 20 + 30 + 40 + 5);
+        assertThat(stats.getMin()).isEqualTo(5);
+        // 이름이 같아진 팀은 하나로 묶임
+        assertThat(columns.statsByTeam()).extracting("teamName", "count").containsExactly(tuple("teamA", 4L));
+        assertThat(columns.oldest(1)).extracting("age").containsExactly(90);
+
+        // 롤백된 변경은 반영 안 함
+        tx.executeWithoutResult(status -> {
+            new JPAQueryFactory(em).selectFrom(member).where(member.username.eq("member2")).fetchOne().setAge(50);
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(columns.countByAge(50, 50)).isZero();
+
+        // 빈 자리가 많아지면 당겨서 채워도 결과는 같음
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em).selectFrom(member).where(member.age.lt(40)).fetch()
+                .forEach(em::remove));
+        assertThat(columns.stats().getCount()).isEqualTo(2);
+        assertThat(columns.oldest(10)).extracting("age").containsExactly(90, 40);
+    }
+
+    @Test
+    public void rebuildAfterBulkStatement() throws Exception{
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em).update(member)
+                .set(member.age, member.age.add(100))
+                .execute());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (columns.countByAge(100, null) != 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(columns.countByAge(100, null)).isEqualTo(5);
+        assertThat(columns.stats().getMax()).isEqualTo(140);
+    }
+}
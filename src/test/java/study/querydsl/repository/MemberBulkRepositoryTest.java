@@ -0,0 +1,136 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.BulkProgress;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    청크마다 따로 커밋하기 때문에 @Transactional 로 감싸면 안 됨 (데이터가 커밋되어 있어야 청크 트랜잭션에서 보임)
+    트랜잭션을 직접 나눠서 실행하고 끝나면 데이터를 지움
+ */
+@SpringBootTest
+class MemberBulkRepositoryTest {
+
+    @Autowired EntityManager em;
+    @Autowired MemberBulkRepository memberBulkRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired MeterRegistry meterRegistry;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < 25; i++) {
+                em.persist(new Member("member" + i, i));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void updateInChunks() throws Exception{
+
+        List<BulkProgress> progress = new ArrayList<>();
+        // 10 살 미만 나이 + 1 (청크마다 한 번씩만 지나가서 두 번 올라가지 않음)
+        BulkProgress result = memberBulkRepository.update(
+                member.age.lt(10),
+                set -> set.set(member.age, member.age.add(1)),
+                4, progress::add);
+
+        assertThat(result.getRows()).isEqualTo(10);
+        // 조건에 맞는 id 구간 (member0 ~ member9) 만 돔 -> 4 + 4 + 2
+        assertThat(result.getChunks()).isEqualTo(3);
+        assertThat(progress).extracting("rows").containsExactly(4L, 8L, 10L);
+        assertThat(progress.get(2).getLastId()).isEqualTo(result.getLastId());
+
+        List<Integer> ages = new JPAQueryFactory(em)
+                .select(member.age)
+                .from(member)
+                .orderBy(member.id.asc())
+                .fetch();
+        assertThat(ages.subList(0, 11)).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 10);
+    }
+
+    // 반환 건수 메트릭은 청크 수가 아니라 처리한 행 수
+    @Test
+    public void rowsMetricAfterChunkedUpdate() throws Exception{
+
+        DistributionSummary rows = meterRegistry.summary("member.repository.rows", "method", "update", "shape", "n/a");
+        long countBefore = rows.count();
+        double totalBefore = rows.totalAmount();
+
+        memberBulkRepository.update(member.age.lt(10), set -> set.set(member.age, member.age.add(1)), 4, p -> {});
+
+        assertThat(rows.count()).isEqualTo(countBefore + 1);
+        assertThat(rows.totalAmount() - totalBefore).isEqualTo(10);
+    }
+
+    @Test
+    public void deleteInChunks() throws Exception{
+
+        List<BulkProgress> progress = new ArrayList<>();
+        BulkProgress result = memberBulkRepository.delete(member.age.goe(5), 7, progress::add);
+
+        assertThat(result.getRows()).isEqualTo(20);
+        assertThat(result.getChunks()).isEqualTo(3);
+        assertThat(progress).hasSize(3);
+        assertThat(new JPAQueryFactory(em).selectFrom(member).fetch()).hasSize(5);
+
+        // 조건에 맞는 행이 없으면 청크도 없음
+        BulkProgress none = memberBulkRepository.delete(member.age.goe(5), progress::add);
+        assertThat(none.getRows()).isZero();
+        assertThat(none.getChunks()).isZero();
+    }
+
+    @Test
+    public void syncPersistenceContext() throws Exception{
+
+        tx.executeWithoutResult(status -> {
+            List<Member> members = new JPAQueryFactory(em)
+                    .selectFrom(member)
+                    .orderBy(member.id.asc())
+                    .fetch();
+            Member member0 = members.get(0);
+            Member member20 = members.get(20);
+
+            memberBulkRepository.update(member.age.lt(10),
+                    set -> set.set(member.username, "비회원"), 4, progress -> {});
+            // 영속성 컨텍스트에 있던 엔티티도 새 값으로 refresh 됨
+            assertThat(member0.getUsername()).isEqualTo("비회원");
+            assertThat(member20.getUsername()).isEqualTo("member20");
+
+            memberBulkRepository.delete(member.age.goe(20), 4, progress -> {});
+            // 지워진 엔티티는 영속성 컨텍스트에서 빠짐
+            assertThat(em.contains(member20)).isFalse();
+            assertThat(em.contains(member0)).isTrue();
+            assertThat(em.find(Member.class, member20.getId())).isNull();
+        });
+    }
+}
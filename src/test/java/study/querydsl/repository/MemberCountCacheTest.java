@@ -0,0 +1,148 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.support.TableChangeNotifier;
+import study.querydsl.support.TableChangeStatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberCountCacheTest {
+
+    TableChangeNotifier notifier;
+    MemberCountCache countCache;
+    AtomicInteger executed;
+
+    @BeforeEach
+    public void before(){
+        notifier = new TableChangeNotifier();
+        countCache = new MemberCountCache(notifier, 10, 30);
+        executed = new AtomicInteger();
+    }
+
+    @Test
+    public void countOnlyOnce() throws Exception{
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        // 빈 문자열 조건은 없는 조건과 같은 키
+        MemberSearchCondition same = new MemberSearchCondition();
+        same.setTeamName("teamA");
+        same.setUsername("");
+
+        assertThat(countCache.count(condition, this::countQuery)).isEqualTo(4);
+        assertThat(countCache.count(same, this::countQuery)).isEqualTo(4);
+        assertThat(executed.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidateOnMemberWrite() throws Exception{
+        MemberSearchCondition condition = new MemberSearchCondition();
+        countCache.count(condition, this::countQuery);
+
+        // 벌크 연산도 SQL 기준으로 잡힘
+        new TableChangeStatementInspector(notifier).inspect("/* update Member member1 */ update member set age=age+1");
+        countCache.count(condition, this::countQuery);
+
+        assertThat(executed.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void ignoreOtherTables() throws Exception{
+        MemberSearchCondition condition = new MemberSearchCondition();
+        countCache.count(condition, this::countQuery);
+
+        new TableChangeStatementInspector(notifier).inspect("insert into hello (id) values (?)");
+        countCache.count(condition, this::countQuery);
+
+        assertThat(executed.get()).isEqualTo(1);
+    }
+
+    /*
+        REQUIRES_NEW 안쪽 트랜잭션의 변경은 안쪽이 끝날 때 다시 비움 (바깥 트랜잭션이 끝날 때까지 안 밀림)
+        안쪽 구문과 커밋 사이에 다른 스레드가 옛날 값으로 채운 캐시가 안쪽 커밋 후에 남으면 안 됨
+     */
+    @Test
+    public void invalidateWhenInnerTransactionEnds() throws Exception{
+        MemberSearchCondition condition = new MemberSearchCondition();
+        TransactionTemplate outer = new TransactionTemplate(new FakeTransactionManager());
+        TransactionTemplate inner = new TransactionTemplate(outer.getTransactionManager());
+        inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        outer.executeWithoutResult(outerStatus -> {
+            // 바깥 트랜잭션에서도 먼저 바뀐 게 있음
+            new TableChangeStatementInspector(notifier).inspect("insert into member (member_id) values (?)");
+            inner.executeWithoutResult(innerStatus -> {
+                new TableChangeStatementInspector(notifier).inspect("delete from member where member_id=?");
+                countInOtherThread(condition);
+            });
+            countInOtherThread(condition);
+            assertThat(executed.get()).isEqualTo(2);
+            outerStatus.setRollbackOnly();
+        });
+    }
+
+    private void countInOtherThread(MemberSearchCondition condition) {
+        Thread reader = new Thread(() -> countCache.count(condition, this::countQuery));
+        reader.start();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long countQuery() {
+        executed.incrementAndGet();
+        return 4;
+    }
+
+    // DB 없이 트랜잭션 경계 / 보류만 흉내냄
+    static class FakeTransactionManager extends AbstractPlatformTransactionManager {
+        private int depth;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected boolean isExistingTransaction(Object transaction) {
+            return depth > 0;
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            depth++;
+        }
+
+        @Override
+        protected Object doSuspend(Object transaction) {
+            return transaction;
+        }
+
+        @Override
+        protected void doResume(Object transaction, Object suspendedResources) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doCleanupAfterCompletion(Object transaction) {
+            depth--;
+        }
+    }
+}
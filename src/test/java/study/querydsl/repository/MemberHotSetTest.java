@@ -0,0 +1,129 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementCounter;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    스냅샷은 커밋된 변경만 반영하므로 @Transactional 대신 트랜잭션을 직접 나눠서 실행하고 끝나면 데이터를 지움
+    컨텍스트가 따로 뜨므로 스키마는 다시 만들지 않음 (MemberResultCacheTest 참고)
+ */
+@SpringBootTest(properties = {
+        "member.hot-set.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=update"
+})
+class MemberHotSetTest {
+
+    @Autowired EntityManager em;
+    @Autowired MemberHotSet hotSet;
+    @Autowired MemberJpaRepository memberJpaRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("member" + i, 10 + i, i % 2 == 0 ? teamA : teamB));
+            }
+            em.persist(new Member("loner", 15));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void sameResultsAsJpa() throws Exception{
+        // 조건 16 가지 모양 전부
+        for (int shape = 0; shape < 16; shape++) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setUsername((shape & 1) != 0 ? "member2" : null);
+            condition.setTeamName((shape & 2) != 0 ? "teamA" : null);
+            condition.setAgeGoe((shape & 4) != 0 ? 12 : null);
+            condition.setAgeLoe((shape & 8) != 0 ? 16 : null);
+            assertThat(hotSet.check(condition)).as(condition.toString()).isTrue();
+        }
+        assertThat(hotSet.check(member.age.between(11, 15).and(member.team.name.ne("teamA")))).isTrue();
+        assertThat(hotSet.check(member.username.startsWith("member").or(member.team.isNull()))).isTrue();
+    }
+
+    @Test
+    public void searchWithoutQuery() throws Exception{
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(14);
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            assertThat(memberJpaRepository.search(condition)).extracting("username")
+                    .containsExactly("member4", "member6", "member8");
+            assertThat(hotSet.findAll(member.team.isNull())).extracting("username").containsExactly("loner");
+            assertThat(hotSet.count(member.age.goe(18))).isEqualTo(2);
+            assertThat(scope.total()).isZero();
+        }
+    }
+
+    @Test
+    public void followCommittedChanges() throws Exception{
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.selectFrom(member).where(member.username.eq("member0")).fetchOne().setAge(99);
+            em.remove(queryFactory.selectFrom(member).where(member.username.eq("member1")).fetchOne());
+            queryFactory.selectFrom(team).where(team.name.eq("teamB")).fetchOne().setName("teamC");
+        });
+        assertThat(hotSet.findAll(member.username.eq("member0"))).extracting("age").containsExactly(99);
+        assertThat(hotSet.exists(member.username.eq("member1"))).isFalse();
+        assertThat(hotSet.count(member.team.name.eq("teamC"))).isEqualTo(4);
+        assertThat(hotSet.count(member.team.name.eq("teamB"))).isZero();
+
+        // 롤백된 변경은 반영 안 함
+        tx.executeWithoutResult(status -> {
+            new JPAQueryFactory(em).selectFrom(member).where(member.username.eq("member2")).fetchOne().setAge(50);
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(hotSet.findAll(member.username.eq("member2"))).extracting("age").containsExactly(12);
+        assertThat(hotSet.check(member.age.goe(0))).isTrue();
+    }
+
+    @Test
+    public void rebuildAfterBulkStatement() throws Exception{
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em).update(member)
+                .set(member.age, member.age.add(100))
+                .where(member.team.isNotNull())
+                .execute());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (hotSet.count(member.age.goe(100)) != 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(hotSet.count(member.age.goe(100))).isEqualTo(10);
+        assertThat(hotSet.check(member.age.goe(100))).isTrue();
+    }
+}
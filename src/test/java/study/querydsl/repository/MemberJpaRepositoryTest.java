@@ -3,18 +3,23 @@ package study.querydsl.repository;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.BulkInsertResult;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementCounter;
 
 import javax.persistence.EntityManager;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -54,6 +59,52 @@ class MemberJpaRepositoryTest {
 
     }
 
+    // findAll_Querydsl 등은 읽기 전용으로 읽어서 수정해도 flush 때 반영 안 됨 (스냅샷 / dirty checking 없음)
+    @Test
+    public void readOnlyQueryTest() throws Exception{
+
+        em.persist(new Member("member1", 10));
+        em.persist(new Member("member2", 20));
+        em.flush();
+        em.clear();
+
+        List<Member> result = memberJpaRepository.findAll_Querydsl();
+        Session session = em.unwrap(Session.class);
+        assertThat(result).allMatch(session::isReadOnly);
+
+        result.get(0).setUsername("changed");
+        em.flush();
+        em.clear();
+
+        assertThat(memberJpaRepository.findByUserName_Querydsl("changed")).isEmpty();
+        assertThat(memberJpaRepository.findByUserName("member1")).hasSize(1);
+    }
+
+    @Test
+    public void saveAllTest() throws Exception{
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.flush();
+
+        Team team = em.getReference(Team.class, teamA.getId());
+        BulkInsertResult result = memberJpaRepository.saveAll(IntStream.range(0, 2500)
+                .mapToObj(i -> {
+                    Member member = new Member("member" + i, i % 100);
+                    member.setTeam(team);
+                    return member;
+                }));
+
+        assertThat(result.getRows()).isEqualTo(2500);
+        assertThat(result.getRowsPerSecond()).isPositive();
+        // flush / clear 되어서 영속성 컨텍스트에 남아 있지 않음
+        assertThat(em.contains(teamA)).isFalse();
+
+        Long count = em.createQuery("select count(m) from Member m where m.team.id = :teamId", Long.class)
+                .setParameter("teamId", teamA.getId())
+                .getSingleResult();
+        assertThat(count).isEqualTo(2500);
+    }
+
     @Test
     public void searchTest() throws Exception{
 
@@ -83,5 +134,62 @@ class MemberJpaRepositoryTest {
 
     }
 
+    // 미리 만들어 둔 16 가지 조건 모양이 BooleanBuilder 로 만든 쿼리와 같은 결과를 내는지
+    @Test
+    public void searchAllShapesTest() throws Exception{
+
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 30));
+        em.flush();
+
+        for (int shape = 0; shape < MemberSearchQueryTemplates.SHAPES; shape++) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            if ((shape & MemberSearchQueryTemplates.USERNAME) != 0) condition.setUsername("member3");
+            if ((shape & MemberSearchQueryTemplates.TEAM_NAME) != 0) condition.setTeamName("teamB");
+            if ((shape & MemberSearchQueryTemplates.AGE_GOE) != 0) condition.setAgeGoe(20);
+            if ((shape & MemberSearchQueryTemplates.AGE_LOE) != 0) condition.setAgeLoe(30);
+
+            List<MemberTeamDto> result;
+            try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+                result = memberJpaRepository.search(condition);
+                assertThat(scope.total()).as("shape %d statements", shape).isLessThanOrEqualTo(1);
+            }
+            assertThat(result)
+                    .as("shape %d", shape)
+                    .containsExactlyInAnyOrderElementsOf(memberJpaRepository.searchByBuilder(condition));
+        }
+    }
+
+    @Test
+    public void searchStreamTest() throws Exception{
+
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        List<MemberTeamDto> result = new ArrayList<>();
+        memberJpaRepository.searchStream(condition, result::add);
+
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member2", "member3", "member4");
+        assertThat(result).extracting("teamName").containsExactlyInAnyOrder("teamA", "teamB", "teamB");
+    }
+
 
 }
\ No newline at end of file
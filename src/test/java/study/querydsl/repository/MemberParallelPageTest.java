@@ -0,0 +1,84 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementCounter;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    count 는 다른 커넥션에서 돌기 때문에 데이터가 커밋되어 있어야 함
+    @Transactional 대신 트랜잭션을 직접 나눠서 실행하고 끝나면 데이터를 지움
+ */
+@SpringBootTest
+class MemberParallelPageTest {
+
+    @Autowired EntityManager em;
+    @Autowired MemberRepository memberRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("member" + i, 10 + i, i % 2 == 0 ? teamA : teamB));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void countRunsOnAnotherConnection() throws Exception{
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(12);
+
+        Page<MemberTeamDto> result;
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            result = memberRepository.searchPageParallel(condition, PageRequest.of(0, 2));
+            // 이 스레드에서는 content 쿼리만 나감
+            assertThat(scope.total()).isEqualTo(1);
+        }
+
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(result.getContent()).extracting("username").containsExactly("member2", "member4");
+
+        // searchPageComplex 와 같은 결과
+        Page<MemberTeamDto> sequential = memberRepository.searchPageComplex(condition, PageRequest.of(1, 2));
+        Page<MemberTeamDto> parallel = memberRepository.searchPageParallel(condition, PageRequest.of(1, 2));
+        assertThat(parallel.getTotalElements()).isEqualTo(sequential.getTotalElements());
+        assertThat(parallel.getContent()).isEqualTo(sequential.getContent());
+    }
+}
@@ -1,22 +1,29 @@
 package study.querydsl.repository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.CountStrategy;
+import study.querydsl.dto.MemberPage;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSlice;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementCounter;
 
 import javax.persistence.EntityManager;
 
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @Transactional
@@ -25,6 +32,7 @@ class MemberRepositoryTest {
     EntityManager em;
 
     @Autowired MemberRepository memberRepository;
+    @Autowired MeterRegistry meterRegistry;
 
     @Test
     public void basicTest() throws Exception{
@@ -101,6 +109,180 @@ class MemberRepositoryTest {
 
     }
 
+    @Test
+    public void searchPageComplex() throws Exception{
+
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        em.flush();
+        Page<MemberTeamDto> result;
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            result = memberRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+            // content + count
+            assertThat(scope.total()).isLessThanOrEqualTo(2);
+        }
+
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(result.getTotalPages()).isEqualTo(2);
+        assertThat(result.getContent()).hasSize(2);
+
+        // 메서드 / 조건 모양별 실행 시간, count 쿼리 시간
+        Timer timer = meterRegistry.find("member.repository")
+                .tags("method", "searchPageComplex", "shape", "ageGoe").timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isPositive();
+        assertThat(meterRegistry.find("member.repository.count").tag("shape", "ageGoe").timer()).isNotNull();
+
+        // 팀 조건이 있으면 팀 없는 회원은 빠짐
+        condition.setTeamName("teamB");
+        Page<MemberTeamDto> teamBResult = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1));
+        assertThat(teamBResult.getTotalElements()).isEqualTo(2);
+    }
+
+    // 쓰기 트랜잭션 안에서는 다른 커넥션에서 아직 커밋 안 된 회원이 안 보이므로 순서대로 실행됨
+    @Test
+    public void searchPageParallelInTransaction() throws Exception{
+
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        Page<MemberTeamDto> result;
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            result = memberRepository.searchPageParallel(condition, PageRequest.of(0, 2));
+            assertThat(scope.total()).isEqualTo(2);
+        }
+
+        assertThat(result.getTotalElements()).isEqualTo(3);
+        assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2");
+    }
+
+    @Test
+    public void searchPageCountStrategies() throws Exception{
+
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member" + i, 10 + i, teamA));
+        }
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        PageRequest firstPage = PageRequest.of(0, 3);
+
+        MemberPage exact = memberRepository.searchPage(condition, firstPage, CountStrategy.exact());
+        assertThat(exact.getTotal()).isEqualTo(10);
+        assertThat(exact.isTotalExact()).isTrue();
+        assertThat(exact.getCountStrategy()).isEqualTo("exact");
+
+        // cap 을 넘으면 cap 까지만 세고 정확하지 않다고 표시
+        MemberPage capped = memberRepository.searchPage(condition, firstPage, CountStrategy.capped(5));
+        assertThat(capped.getTotal()).isEqualTo(5);
+        assertThat(capped.isTotalExact()).isFalse();
+        assertThat(capped.getCountStrategy()).isEqualTo("capped:5");
+        assertThat(capped.getContent()).extracting("username").containsExactly("member0", "member1", "member2");
+
+        MemberPage underCap = memberRepository.searchPage(condition, firstPage, CountStrategy.parse("capped:20"));
+        assertThat(underCap.getTotal()).isEqualTo(10);
+        assertThat(underCap.isTotalExact()).isTrue();
+
+        // id 범위가 샘플 구간보다 작으면 정확하게 셈
+        MemberPage estimated = memberRepository.searchPage(condition, firstPage, CountStrategy.parse("estimated"));
+        assertThat(estimated.getTotal()).isEqualTo(10);
+        assertThat(estimated.getCountStrategy()).isEqualTo("estimated");
+
+        // 마지막 페이지는 count 없이 정확한 값
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            MemberPage last = memberRepository.searchPage(condition, PageRequest.of(3, 3), CountStrategy.capped(5));
+            assertThat(last.getTotal()).isEqualTo(10);
+            assertThat(last.isTotalExact()).isTrue();
+            assertThat(scope.total()).isEqualTo(1);
+        }
+
+        assertThatThrownBy(() -> CountStrategy.parse("capped:abc")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CountStrategy.parse("approximate")).isInstanceOf(IllegalArgumentException.class);
+        // cap 은 MAX_CAP 까지만 (cap + 1 넘침 방지)
+        assertThatThrownBy(() -> CountStrategy.capped(CountStrategy.MAX_CAP + 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CountStrategy.parse("capped:" + Long.MAX_VALUE)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // 샘플 구간이 고정이라 같은 데이터면 추정값도 같음
+    @Test
+    public void estimatedTotalIsStable() throws Exception{
+
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member" + i, 10 + i, teamA));
+        }
+        em.flush();
+        // id 범위를 샘플 구간보다 넓게
+        em.createNativeQuery("insert into member (member_id, username, age) select max(member_id) + 100000, 'far', 1 from member")
+                .executeUpdate();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+        MemberPage first = memberRepository.searchPage(condition, PageRequest.of(0, 3), CountStrategy.estimated());
+        MemberPage second = memberRepository.searchPage(condition, PageRequest.of(0, 3), CountStrategy.estimated());
+
+        assertThat(first.isTotalExact()).isFalse();
+        assertThat(second.getTotal()).isEqualTo(first.getTotal());
+    }
+
+    @Test
+    public void searchSlice() throws Exception{
+
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+
+        Member member3 = new Member("member3", 20, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        em.flush();
+        MemberSlice first;
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            first = memberRepository.searchSlice(condition, null, 2);
+            // count 쿼리 없이 한 번
+            assertThat(scope.total()).isLessThanOrEqualTo(1);
+        }
+        assertThat(first.getContent()).extracting("username").containsExactly("member1","member2");
+        assertThat(first.isHasNext()).isTrue();
+
+        // 같은 나이(20)가 페이지 경계에 걸려도 id 로 이어서 조회
+        MemberSlice second = memberRepository.searchSlice(condition, first.getNextCursor(), 2);
+        assertThat(second.getContent()).extracting("username").containsExactly("member3","member4");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
     @Test
     public void querydslPredicateExecutorTest() throws Exception{
 
@@ -126,4 +308,34 @@ class MemberRepositoryTest {
         }
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void searchSqlMetrics() throws Exception{
+
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        List<MemberTeamDto> result = memberRepository.search(condition);
+        assertThat(result).hasSize(2);
+
+        // 리포지토리 메서드에서 나간 SQL 은 caller 태그로 구분됨
+        // (같은 메서드라도 조건 모양마다 SQL 이 달라서 teamName 만 있는 모양을 찾음)
+        Timer timer = meterRegistry.find("sql.statement")
+                .tags("type", "query", "caller", "MemberRepositoryImpl.search")
+                .timers().stream()
+                .filter(t -> !t.getId().getTag("shape").contains(">="))
+                .findFirst().orElse(null);
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isGreaterThanOrEqualTo(1);
+        assertThat(timer.getId().getTag("shape")).contains("from member").doesNotContain("teama");
+
+        assertThat(meterRegistry.find("sql.statement.rows")
+                .tags("caller", "MemberRepositoryImpl.search", "shape", timer.getId().getTag("shape"))
+                .summary().max()).isEqualTo(2);
+    }
+}
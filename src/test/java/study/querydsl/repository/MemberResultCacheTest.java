@@ -0,0 +1,174 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementCounter;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    무효화는 커밋 후에 일어나므로 @Transactional 대신 트랜잭션을 직접 나눠서 실행하고 끝나면 데이터를 지움
+    설정이 달라서 스프링 컨텍스트가 따로 뜨는데, 스키마를 다시 만들면(create) 시퀀스가 처음부터 다시 시작해서
+    먼저 떠 있던 컨텍스트가 미리 받아 둔 id 와 순서가 꼬이므로 update 로 둠
+ */
+@SpringBootTest(properties = {
+        "member.result-cache.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=update"
+})
+class MemberResultCacheTest {
+
+    @Autowired EntityManager em;
+    @Autowired MemberJpaRepository memberJpaRepository;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberBulkRepository memberBulkRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired MeterRegistry meterRegistry;
+
+    TransactionTemplate tx;
+    MemberSearchCondition teamA;
+    MemberSearchCondition teamB;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("member" + i, 10 + i, i % 2 == 0 ? teamA : teamB));
+            }
+        });
+        teamA = new MemberSearchCondition();
+        teamA.setTeamName("teamA");
+        teamB = new MemberSearchCondition();
+        teamB.setTeamName("teamB");
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void hitWithoutQuery() throws Exception{
+        double hits = hits("search");
+
+        List<MemberTeamDto> first = memberJpaRepository.search(teamA);
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            // 빈 문자열 조건은 없는 조건과 같은 키
+            MemberSearchCondition same = new MemberSearchCondition();
+            same.setTeamName("teamA");
+            same.setUsername("");
+            assertThat(memberJpaRepository.search(same)).isSameAs(first);
+            assertThat(scope.total()).isZero();
+        }
+        assertThat(hits("search")).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void invalidateOnlyDependentEntries() throws Exception{
+        List<MemberTeamDto> a = memberJpaRepository.search(teamA);
+        List<MemberTeamDto> b = memberJpaRepository.search(teamB);
+
+        // teamA 회원 나이 변경 -> teamA 결과만 무효화
+        tx.executeWithoutResult(status -> findMember("member0").setAge(99));
+        assertThat(memberJpaRepository.search(teamB)).isSameAs(b);
+        List<MemberTeamDto> changed = memberJpaRepository.search(teamA);
+        assertThat(changed).isNotSameAs(a);
+        assertThat(changed).extracting("age").contains(99);
+
+        // teamB 로 새로 들어오는 회원 -> teamB 결과 무효화
+        tx.executeWithoutResult(status -> {
+            Team teamB = new JPAQueryFactory(em).selectFrom(team).where(team.name.eq("teamB")).fetchOne();
+            em.persist(new Member("member10", 20, teamB));
+        });
+        assertThat(memberJpaRepository.search(teamA)).isSameAs(changed);
+        assertThat(memberJpaRepository.search(teamB)).hasSize(6);
+
+        // 롤백된 변경은 무효화 안 함
+        List<MemberTeamDto> cached = memberJpaRepository.search(teamA);
+        tx.executeWithoutResult(status -> {
+            findMember("member2").setAge(50);
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(memberJpaRepository.search(teamA)).isSameAs(cached);
+    }
+
+    @Test
+    public void invalidateOnTeamRename() throws Exception{
+        List<MemberTeamDto> a = memberJpaRepository.search(teamA);
+        MemberSearchCondition renamed = new MemberSearchCondition();
+        renamed.setTeamName("teamC");
+        assertThat(memberJpaRepository.search(renamed)).isEmpty();
+
+        tx.executeWithoutResult(status ->
+                new JPAQueryFactory(em).selectFrom(team).where(team.name.eq("teamA")).fetchOne().setName("teamC"));
+
+        assertThat(memberJpaRepository.search(teamA)).isEmpty();
+        assertThat(memberJpaRepository.search(renamed)).hasSameSizeAs(a);
+    }
+
+    @Test
+    public void invalidateOnBulkStatement() throws Exception{
+        Page<MemberTeamDto> page = memberRepository.searchPageSimple(teamA, PageRequest.of(0, 2));
+        assertThat(memberRepository.searchPageSimple(teamA, PageRequest.of(0, 2))).isSameAs(page);
+        assertThat(page.getTotalElements()).isEqualTo(5);
+
+        // 벌크 연산은 어떤 행이 바뀌었는지 모르므로 전부 무효화
+        memberBulkRepository.delete(member.age.goe(16), progress -> {});
+
+        Page<MemberTeamDto> changed = memberRepository.searchPageSimple(teamA, PageRequest.of(0, 2));
+        assertThat(changed).isNotSameAs(page);
+        assertThat(changed.getTotalElements()).isEqualTo(3);
+    }
+
+    // 호출한 트랜잭션이 롤백돼도 이미 커밋된 청크(REQUIRES_NEW) 의 무효화는 반영됨
+    @Test
+    public void invalidateOnBulkChunkInRolledBackTransaction() throws Exception{
+        assertThat(memberJpaRepository.search(teamA)).hasSize(5);
+
+        tx.executeWithoutResult(status -> {
+            Team teamB = new JPAQueryFactory(em).selectFrom(team).where(team.name.eq("teamB")).fetchOne();
+            em.persist(new Member("member10", 20, teamB));
+            em.flush();
+            memberBulkRepository.delete(member.username.eq("member0"), progress -> {});
+            status.setRollbackOnly();
+        });
+
+        assertThat(memberJpaRepository.search(teamA)).hasSize(4);
+    }
+
+    private Member findMember(String username) {
+        return new JPAQueryFactory(em).selectFrom(member).where(member.username.eq(username)).fetchOne();
+    }
+
+    private double hits(String method) {
+        return meterRegistry.find("member.result-cache").tag("method", method).tag("result", "hit").counters()
+                .stream().mapToDouble(c -> c.count()).sum();
+    }
+}
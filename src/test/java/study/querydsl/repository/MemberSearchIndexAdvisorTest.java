@@ -0,0 +1,35 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.repository.MemberSearchIndexAdvisor.QueryPlan;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberSearchIndexAdvisorTest {
+
+    @Autowired EntityManager em;
+    @Autowired MemberSearchIndexAdvisor advisor;
+
+    @Test
+    public void noFullScanForSearchShapes() throws Exception{
+        List<QueryPlan> plans = advisor.explainAll(em);
+        // 16 가지 모양 x (content, count, pageSimple, pageSimpleCount, slice, stream)
+        assertThat(plans).hasSize(96);
+
+        // 조건이 없는 모양은 전체를 읽는 게 정상 (검출은 되지만 문제로 보지 않음)
+        assertThat(plans.get(0).getShape()).isEqualTo("none");
+        assertThat(plans.get(0).getTableScans()).containsExactly("member");
+        assertThat(plans.get(0).isProblem()).isFalse();
+
+        // 실패하면 어떤 모양이 어느 테이블을 전부 읽는지 EXPLAIN 결과가 같이 나옴
+        assertThat(advisor.problems(em)).isEmpty();
+    }
+}
@@ -0,0 +1,102 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSuggestionDto;
+import study.querydsl.entity.Member;
+import study.querydsl.support.SqlStatementCounter;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    인덱스는 커밋된 변경만 반영하므로 @Transactional 대신 트랜잭션을 직접 나눠서 실행하고 끝나면 데이터를 지움
+ */
+@SpringBootTest
+class MemberUsernameIndexTest {
+
+    @Autowired EntityManager em;
+    @Autowired MemberUsernameIndex index;
+    @Autowired MemberBulkRepository memberBulkRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("Alice", 30));
+            em.persist(new Member("alex", 20));
+            em.persist(new Member("albert", 40));
+            em.persist(new Member("bob", 10));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void suggestWithoutQuery() throws Exception{
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            // 대소문자 무시, 나이 많은 순
+            assertThat(index.suggest("AL", 10)).extracting("username").containsExactly("albert", "Alice", "alex");
+            assertThat(index.suggest("al", 2)).extracting("username").containsExactly("albert", "Alice");
+            assertThat(index.suggest("c", 10)).isEmpty();
+            assertThat(scope.total()).isZero();
+        }
+    }
+
+    @Test
+    public void followCommittedWrites() throws Exception{
+        tx.executeWithoutResult(status -> {
+            findMember("bob").setUsername("alfred");
+            em.remove(findMember("alex"));
+            em.persist(new Member("alice", 25));
+        });
+        assertThat(index.suggest("al", 10)).extracting("username")
+                .containsExactly("albert", "Alice", "alice", "alfred");
+        assertThat(index.suggest("b", 10)).isEmpty();
+
+        // 롤백된 변경은 반영 안 함
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("alan", 50));
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(index.suggest("alan", 10)).isEmpty();
+    }
+
+    @Test
+    public void rebuildAfterBulkStatement() throws Exception{
+        memberBulkRepository.delete(member.age.goe(30), progress -> {});
+
+        // 벌크 연산 후에는 백그라운드에서 다시 만듦
+        List<MemberSuggestionDto> suggestions = index.suggest("al", 10);
+        for (int i = 0; i < 50 && suggestions.size() != 1; i++) {
+            Thread.sleep(100);
+            suggestions = index.suggest("al", 10);
+        }
+        assertThat(suggestions).extracting("username").containsExactly("alex");
+    }
+
+    private Member findMember(String username) {
+        return new JPAQueryFactory(em).selectFrom(member).where(member.username.eq(username)).fetchOne();
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    2차 캐시는 커밋이 되어야 올라가므로 @Transactional 대신 트랜잭션을 직접 나눠서 실행하고
+    끝나면 데이터를 지움
+ */
+@SpringBootTest
+class TeamRepositoryTest {
+
+    @Autowired EntityManager em;
+    @Autowired EntityManagerFactory emf;
+    @Autowired TeamRepository teamRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Statistics statistics;
+    Long teamId;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        teamId = tx.execute(status -> teamRepository.save(new Team("cachedTeam")).getId());
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em).delete(team).execute());
+    }
+
+    @Test
+    public void findByIdHitsSecondLevelCache() throws Exception{
+        tx.executeWithoutResult(status -> em.find(Team.class, teamId));
+        tx.executeWithoutResult(status -> em.find(Team.class, teamId));
+
+        assertThat(statistics.getDomainDataRegionStatistics(Team.class.getName()).getHitCount()).isEqualTo(2);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    public void findByNameHitsQueryCache() throws Exception{
+        tx.executeWithoutResult(status -> assertThat(teamRepository.findByName("cachedTeam")).hasSize(1));
+        tx.executeWithoutResult(status -> assertThat(teamRepository.findByName("cachedTeam")).hasSize(1));
+
+        assertThat(statistics.getQueryRegionStatistics(TeamRepository.TEAM_BY_NAME_REGION).getHitCount()).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    // JPAQueryFactory 로 벌크 update 를 해도 캐시에서 옛날 값이 나오면 안 됨
+    @Test
+    public void bulkUpdateKeepsCacheCoherent() throws Exception{
+        tx.executeWithoutResult(status -> teamRepository.findByName("cachedTeam"));
+
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em)
+                .update(team)
+                .set(team.name, "renamedTeam")
+                .where(team.id.eq(teamId))
+                .execute());
+
+        tx.executeWithoutResult(status -> {
+            assertThat(em.find(Team.class, teamId).getName()).isEqualTo("renamedTeam");
+            assertThat(teamRepository.findByName("cachedTeam")).isEmpty();
+            assertThat(teamRepository.findByName("renamedTeam")).hasSize(1);
+        });
+    }
+}
@@ -0,0 +1,178 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*
+    요약은 커밋할 때 같이 반영되므로 @Transactional 대신 트랜잭션을 직접 나눠서 실행하고 끝나면 데이터를 지움
+ */
+@SpringBootTest
+class TeamStatsSummaryTest {
+
+    @Autowired EntityManager em;
+    @Autowired TeamStatsSummary summary;
+    @Autowired MemberBulkRepository memberBulkRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            em.persist(new Member("member4", 40, teamB));
+            em.persist(new Member("loner", 50));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        });
+    }
+
+    @Test
+    public void maintainedWithEntityChanges() throws Exception{
+        // QuerydslBasicTest.group 과 같은 값
+        assertThat(summary.findAll()).extracting("teamName", "memberCount", "avgAge", "minAge", "maxAge").containsExactly(
+                tuple("teamA", 2L, 15.0, 10, 20),
+                tuple("teamB", 2L, 35.0, 30, 40));
+
+        tx.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            Team teamB = queryFactory.selectFrom(team).where(team.name.eq("teamB")).fetchOne();
+            Team teamC = new Team("teamC");
+            em.persist(teamC);
+            // 팀 변경 (최소였던 회원이 teamA 에서 빠짐), 나이 변경, 삭제, 새 팀에 추가
+            queryFactory.selectFrom(member).where(member.username.eq("member1")).fetchOne().setTeam(teamB);
+            queryFactory.selectFrom(member).where(member.username.eq("member3")).fetchOne().setAge(45);
+            em.remove(queryFactory.selectFrom(member).where(member.username.eq("member4")).fetchOne());
+            em.persist(new Member("member5", 60, teamC));
+        });
+
+        assertThat(summary.findAll()).extracting("teamName", "memberCount", "minAge", "maxAge").containsExactly(
+                tuple("teamA", 1L, 20, 20),
+                tuple("teamB", 2L, 10, 45),
+                tuple("teamC", 1L, 60, 60));
+        assertThat(summary.verify()).isEmpty();
+    }
+
+    @Test
+    public void rollbackLeavesSummary() throws Exception{
+        List<TeamStatsDto> before = summary.findAll();
+        tx.executeWithoutResult(status -> {
+            Team teamA = new JPAQueryFactory(em).selectFrom(team).where(team.name.eq("teamA")).fetchOne();
+            em.persist(new Member("member5", 99, teamA));
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(summary.findAll()).isEqualTo(before);
+        assertThat(summary.verify()).isEmpty();
+    }
+
+    @Test
+    public void reconcileBulkStatements() throws Exception{
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em).update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.team.isNotNull())
+                .execute());
+        // 커밋과 같이 반영됨 (백그라운드 아님)
+        assertThat(summary.findAll()).extracting("teamName", "minAge", "maxAge").containsExactly(
+                tuple("teamA", 11, 21),
+                tuple("teamB", 31, 41));
+
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em).delete(member)
+                .where(member.age.goe(41))
+                .execute());
+        assertThat(summary.findAll()).extracting("teamName", "memberCount").containsExactly(
+                tuple("teamA", 2L),
+                tuple("teamB", 1L));
+        assertThat(summary.verify()).isEmpty();
+    }
+
+    // use_sql_comments 로 앞에 주석이 붙어도 username 만 바꾸는 벌크 update 는 다시 계산 안 함
+    @Test
+    public void skipUsernameOnlyBulkUpdate() throws Exception{
+        tx.executeWithoutResult(status -> em.createNativeQuery("update team_stats set member_count = 99").executeUpdate());
+
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em).update(member)
+                .set(member.username, member.username.concat("!"))
+                .where(member.age.goe(20))
+                .execute());
+
+        // 다시 계산했다면 틀어 둔 값이 고쳐졌을 것
+        assertThat(summary.findAll()).extracting("memberCount").containsExactly(99L, 99L);
+        assertThat(summary.verify()).hasSize(2);
+    }
+
+    // 청크(REQUIRES_NEW) 는 자기가 커밋될 때 반영, 호출한 트랜잭션이 롤백돼도 남음
+    @Test
+    public void bulkChunkInRolledBackTransaction() throws Exception{
+        tx.executeWithoutResult(status -> {
+            Team teamA = new JPAQueryFactory(em).selectFrom(team).where(team.name.eq("teamA")).fetchOne();
+            em.persist(new Member("member5", 99, teamA));
+            em.flush();
+            memberBulkRepository.delete(member.username.eq("member1"), progress -> {});
+            status.setRollbackOnly();
+        });
+
+        assertThat(summary.findAll()).extracting("teamName", "memberCount", "minAge", "maxAge").containsExactly(
+                tuple("teamA", 1L, 20, 20),
+                tuple("teamB", 2L, 30, 40));
+        assertThat(summary.verify()).isEmpty();
+    }
+
+    // 청크는 건드린 팀만 다시 계산 (update 로 옮겨 간 팀 포함)
+    @Test
+    public void bulkChunkRecomputesTouchedTeams() throws Exception{
+        tx.executeWithoutResult(status -> em.createNativeQuery("update team_stats set member_count = 99").executeUpdate());
+
+        memberBulkRepository.delete(member.username.eq("member1"), progress -> {});
+        assertThat(summary.findAll()).extracting("teamName", "memberCount").containsExactly(
+                tuple("teamA", 1L),
+                tuple("teamB", 99L));
+
+        Team teamB = new JPAQueryFactory(em).selectFrom(team).where(team.name.eq("teamB")).fetchOne();
+        memberBulkRepository.update(member.username.eq("member2"), set -> set.set(member.team, teamB), progress -> {});
+        assertThat(summary.findAll()).extracting("teamName", "memberCount", "minAge", "maxAge").containsExactly(
+                tuple("teamA", 0L, null, null),
+                tuple("teamB", 3L, 20, 40));
+        assertThat(summary.verify()).isEmpty();
+    }
+
+    @Test
+    public void verifyRepairsDrift() throws Exception{
+        tx.executeWithoutResult(status -> em.createNativeQuery("update team_stats set member_count = 99").executeUpdate());
+
+        assertThat(summary.verify()).hasSize(2);
+        assertThat(summary.verify()).isEmpty();
+        assertThat(summary.findAll()).extracting("memberCount").containsExactly(2L, 2L);
+    }
+}
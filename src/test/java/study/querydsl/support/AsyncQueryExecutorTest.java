@@ -0,0 +1,68 @@
+package study.querydsl.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncQueryExecutorTest {
+
+    @Test
+    public void autoModeFollowsRuntime() throws Exception{
+        AsyncQueryExecutor executor = new AsyncQueryExecutor(new SimpleMeterRegistry(), AsyncQueryExecutor.Mode.AUTO, 2, 2);
+        try {
+            // 11 / 17 에서는 스레드 풀로 대신함
+            AsyncQueryExecutor.Mode expected = Runtime.version().feature() >= 21
+                    ? AsyncQueryExecutor.Mode.VIRTUAL : AsyncQueryExecutor.Mode.PLATFORM;
+            assertThat(executor.mode()).isEqualTo(expected);
+
+            SqlCallerContext.setEndpoint("/async/v1/members");
+            try {
+                assertThat(executor.submit(SqlCallerContext::endpoint).get(5, TimeUnit.SECONDS))
+                        .isEqualTo("/async/v1/members");
+            } finally {
+                SqlCallerContext.setEndpoint(null);
+            }
+
+            CompletableFuture<Object> failed = executor.submit(() -> {
+                throw new IllegalArgumentException("bad");
+            });
+            assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalArgumentException.class);
+        } finally {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    public void rejectWhenQueueIsFull() throws Exception{
+        for (AsyncQueryExecutor.Mode mode : AsyncQueryExecutor.Mode.values()) {
+            AsyncQueryExecutor executor = new AsyncQueryExecutor(new SimpleMeterRegistry(), mode, 1, 1);
+            CountDownLatch release = new CountDownLatch(1);
+            try {
+                // 실행 1 + 대기 1 까지만 받음
+                CompletableFuture<Boolean> running = executor.submit(() -> release.await(5, TimeUnit.SECONDS));
+                CompletableFuture<Boolean> queued = executor.submit(() -> true);
+                CompletableFuture<Boolean> rejected = executor.submit(() -> true);
+
+                assertThat(rejected).isCompletedExceptionally();
+                assertThatThrownBy(rejected::join).hasCauseInstanceOf(RejectedExecutionException.class);
+
+                release.countDown();
+                assertThat(running.get(5, TimeUnit.SECONDS)).isTrue();
+                assertThat(queued.get(5, TimeUnit.SECONDS)).isTrue();
+            } finally {
+                release.countDown();
+                executor.destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/*
+    primary 는 평소 쓰는 H2, 복제본은 인메모리 H2 (복제는 없으므로 스키마만 복사하고 복제본에만 있는 행을 넣어 둠)
+    읽기 전용 트랜잭션에서만 그 행이 보이면 복제본으로 간 것
+    컨텍스트가 따로 뜨므로 스키마는 다시 만들지 않음 (MemberResultCacheTest 참고)
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=update",
+        "datasource.routing.enabled=true",
+        "datasource.routing.replicas[0].url=" + ReadWriteRoutingTest.REPLICA_URL,
+        "datasource.routing.replicas[0].username=sa",
+        "datasource.routing.read-your-writes-ms=60000"
+})
+class ReadWriteRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired EntityManager em;
+    @Autowired DataSource dataSource;
+    @Autowired MemberJpaRepository memberJpaRepository;
+    @Autowired MemberRepository memberRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    TransactionTemplate readOnlyTx;
+
+    @BeforeEach
+    public void before() throws Exception{
+        tx = new TransactionTemplate(transactionManager);
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+
+        List<String> ddl = new JdbcTemplate(dataSource).queryForList("script nodata", String.class);
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+            for (String sql : ddl) {
+                if (!sql.startsWith("--")) {
+                    statement.execute(sql);
+                }
+            }
+            statement.execute("insert into member (member_id, username, age) values (1000000, 'replicaOnly', 10)");
+        }
+        ReadWriteRoutingDataSource.unpin();
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em).delete(member).execute());
+        ReadWriteRoutingDataSource.unpin();
+    }
+
+    @Test
+    public void readOnlyTransactionGoesToReplica() throws Exception{
+
+        assertThat(findByUserName(readOnlyTx, "replicaOnly")).hasSize(1);
+        assertThat(findByUserName(tx, "replicaOnly")).isEmpty();
+
+        // 트랜잭션 밖에서 불러도 리포지토리의 @Transactional(readOnly = true) 로 복제본
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("replicaOnly");
+        assertThat(memberRepository.search(condition)).hasSize(1);
+        assertThat(memberJpaRepository.findAll_Querydsl()).extracting("username").containsExactly("replicaOnly");
+    }
+
+    @Test
+    public void readYourWrites() throws Exception{
+
+        tx.executeWithoutResult(status -> em.persist(new Member("written", 20)));
+
+        // 방금 쓴 스레드는 잠시 primary 에서 읽음
+        assertThat(findByUserName(readOnlyTx, "written")).hasSize(1);
+
+        ReadWriteRoutingDataSource.unpin();
+        assertThat(findByUserName(readOnlyTx, "written")).isEmpty();
+    }
+
+    // 고정은 요청이 끝나면 풀림 (요청 스레드가 다음 요청에 재사용되어도 primary 에 붙어 있지 않음)
+    @Test
+    public void pinEndsWithRequest() throws Exception{
+
+        SqlCallerInterceptor interceptor = new SqlCallerInterceptor(10);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/members");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, null);
+        tx.executeWithoutResult(status -> em.persist(new Member("written", 20)));
+        assertThat(findByUserName(readOnlyTx, "written")).hasSize(1);
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertThat(findByUserName(readOnlyTx, "written")).isEmpty();
+    }
+
+    // 병렬 count 도 content 와 같은 쪽에서 셈 (두 번째 페이지라 content 는 비고 count 만 의미 있음)
+    @Test
+    public void parallelCountFollowsRouting() throws Exception{
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("replicaOnly");
+        assertThat(memberRepository.searchPageParallel(condition, PageRequest.of(1, 1)).getTotalElements()).isEqualTo(1);
+
+        // 쓰고 난 스레드면 count 를 돌리는 스레드도 primary
+        tx.executeWithoutResult(status -> em.persist(new Member("written", 20)));
+        condition.setUsername("written");
+        assertThat(memberRepository.searchPageParallel(condition, PageRequest.of(1, 1)).getTotalElements()).isEqualTo(1);
+    }
+
+    private List<Member> findByUserName(TransactionTemplate template, String username) {
+        return template.execute(status -> memberJpaRepository.findByUserName(username));
+    }
+}
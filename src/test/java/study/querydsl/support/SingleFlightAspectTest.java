@@ -0,0 +1,134 @@
+package study.querydsl.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SingleFlightAspectTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    TableChangeNotifier tableNotifier = new TableChangeNotifier();
+    ExecutorService callers = Executors.newCachedThreadPool();
+
+    AtomicInteger executions = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void after(){
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallsShareOneExecution() throws Exception{
+        SingleFlightAspect aspect = new SingleFlightAspect(tableNotifier, meterRegistry, true, 5000);
+
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            // 빈 문자열 조건은 null 과 같은 키
+            MemberSearchCondition condition = condition(i % 2 == 0 ? "" : null);
+            results.add(callers.submit(() -> call(aspect, condition)));
+        }
+        awaitWaiting(5);
+        release.countDown();
+
+        Object first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<Object> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(first);
+        }
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(meterRegistry.counter("member.single-flight", "method", "searchPageSimple", "result", "coalesced").count())
+                .isEqualTo(4);
+    }
+
+    @Test
+    public void boundedWaitAndChangedTables() throws Exception{
+        SingleFlightAspect aspect = new SingleFlightAspect(tableNotifier, meterRegistry, true, 100);
+
+        Future<Object> leader = callers.submit(() -> call(aspect, condition(null)));
+        awaitWaiting(1);
+
+        // 오래 기다리면 직접 실행
+        CountDownLatch leaderRelease = release;
+        release = new CountDownLatch(0);
+        call(aspect, condition(null));
+        assertThat(meterRegistry.counter("member.single-flight", "method", "searchPageSimple", "result", "timeout").count())
+                .isEqualTo(1);
+
+        // member 가 바뀐 뒤에는 진행 중인 조회에 안 붙음
+        tableNotifier.tableChanged("member", "update member set age = 1");
+        call(aspect, condition(null));
+        assertThat(meterRegistry.counter("member.single-flight", "method", "searchPageSimple", "result", "executed").count())
+                .isEqualTo(2);
+        assertThat(executions.get()).isEqualTo(3);
+
+        leaderRelease.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    private Object call(SingleFlightAspect aspect, MemberSearchCondition condition) throws Exception {
+        try {
+            return aspect.coalesce(joinPoint(condition));
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ProceedingJoinPoint joinPoint(MemberSearchCondition condition) throws Throwable {
+        CountDownLatch latch = release;
+        Signature signature = mock(Signature.class);
+        when(signature.getName()).thenReturn("searchPageSimple");
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{condition, PageRequest.of(0, 10)});
+        when(joinPoint.proceed()).thenAnswer(invocation -> {
+            executions.incrementAndGet();
+            latch.await(5, TimeUnit.SECONDS);
+            return new Object();
+        });
+        return joinPoint;
+    }
+
+    private static MemberSearchCondition condition(String username) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setAgeGoe(10);
+        return condition;
+    }
+
+    // 실행 중인 호출 하나 + 나머지는 그 결과를 기다리는 중이 될 때까지
+    private void awaitWaiting(int calls) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline && waitingCallers() < calls) {
+            Thread.sleep(10);
+        }
+        assertThat(waitingCallers()).isEqualTo(calls);
+    }
+
+    private static long waitingCallers() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getState() == Thread.State.WAITING || thread.getState() == Thread.State.TIMED_WAITING)
+                .filter(thread -> List.of(thread.getStackTrace()).stream()
+                        .anyMatch(frame -> frame.getMethodName().equals("coalesce")))
+                .count();
+    }
+}
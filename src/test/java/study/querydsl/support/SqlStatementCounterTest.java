@@ -0,0 +1,102 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class SqlStatementCounterTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberJpaRepository memberJpaRepository;
+
+    @Test
+    public void lazyLoadingIsRepeated() throws Exception{
+
+        for (int i = 0; i < 3; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            em.persist(new Member("member" + i, 10 + i, team));
+        }
+        em.flush();
+        em.clear();
+
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+            // 회원마다 팀을 따로 조회 (N+1)
+            members.forEach(m -> m.getTeam().getName());
+
+            assertThat(scope.total()).isEqualTo(4);
+            assertThat(scope.repeated(3)).hasSize(1);
+            assertThat(scope.repeated(3).keySet().iterator().next()).contains("from team");
+        }
+    }
+
+    @Test
+    public void nestedScopes() throws Exception{
+
+        try (SqlStatementCounter.Scope outer = SqlStatementCounter.open()) {
+            em.createQuery("select m from Member m").getResultList();
+            try (SqlStatementCounter.Scope inner = SqlStatementCounter.open()) {
+                em.createQuery("select t from Team t").getResultList();
+                assertThat(inner.total()).isEqualTo(1);
+            }
+            em.createQuery("select t from Team t").getResultList();
+
+            assertThat(outer.total()).isEqualTo(3);
+        }
+    }
+
+    // 회원 조회 메서드별 SQL 개수 (search / searchStream 은 한 번, searchPageSimple 은 content + count)
+    @Test
+    public void memberSearchBudgets() throws Exception{
+
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setTeamName("teamB");
+
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            assertThat(memberRepository.search(condition)).hasSize(2);
+            assertThat(scope.total()).isLessThanOrEqualTo(1);
+        }
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            assertThat(memberJpaRepository.search(condition)).hasSize(2);
+            assertThat(scope.total()).isLessThanOrEqualTo(1);
+        }
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            memberJpaRepository.searchStream(condition, row -> {});
+            assertThat(scope.total()).isLessThanOrEqualTo(1);
+        }
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            assertThat(memberRepository.searchPageSimple(new MemberSearchCondition(), PageRequest.of(0, 3))
+                    .getTotalElements()).isEqualTo(4);
+            assertThat(scope.total()).isLessThanOrEqualTo(2);
+        }
+    }
+}
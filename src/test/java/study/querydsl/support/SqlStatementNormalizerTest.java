@@ -0,0 +1,30 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlStatementNormalizerTest {
+
+    @Test
+    public void normalize() throws Exception{
+
+        String sql = "/* select m from Member m */ select m.member_id from member m\n"
+                + "   where m.username = 'member1' and m.age >= 10 and m.team_id in (1, 2, 3)";
+
+        assertThat(SqlStatementNormalizer.normalize(sql))
+                .isEqualTo("select m.member_id from member m where m.username = ? and m.age >= ? and m.team_id in (?)");
+    }
+
+    @Test
+    public void maxShapes() throws Exception{
+
+        SqlStatementNormalizer normalizer = new SqlStatementNormalizer(1);
+
+        assertThat(normalizer.shapeOf("select * from member where age = 10")).isEqualTo("select * from member where age = ?");
+        // 이미 아는 모양이면 그대로
+        assertThat(normalizer.shapeOf("select * from member where age = 20")).isEqualTo("select * from member where age = ?");
+        // 한도를 넘은 새 모양은 other
+        assertThat(normalizer.shapeOf("select * from team")).isEqualTo(SqlStatementNormalizer.OTHER);
+    }
+}